@@ -104,6 +104,20 @@ public class ClientCommands implements ClientModInitializer {
         }
     }
 
+    /**
+     * Turns a string such as a server address into something which is safe to use in a file name on any OS, by
+     * replacing every character other than letters, digits, dots, dashes and underscores with an underscore
+     */
+    public static String toFileName(String name) {
+        StringBuilder fileName = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            boolean allowed = (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '.' || c == '_' || c == '-';
+            fileName.append(allowed ? c : '_');
+        }
+        return fileName.toString();
+    }
+
     public static void registerCommands(CommandDispatcher<FabricClientCommandSource> dispatcher, CommandRegistryAccess registryAccess) {
         Set<String> existingCommands = getCommands(dispatcher);
 
@@ -101,6 +101,24 @@ public class Configs {
         Configs.maxChorusItemThrows = MathHelper.clamp(maxChorusItemThrows, 0, 1000000);
     }
 
+    @Config(setter = @Config.Setter("setMaxItemThrowsPerTick"))
+    private static int maxItemThrowsPerTick = 4;
+    public static int getMaxItemThrowsPerTick() {
+        return maxItemThrowsPerTick;
+    }
+    public static void setMaxItemThrowsPerTick(int maxItemThrowsPerTick) {
+        Configs.maxItemThrowsPerTick = MathHelper.clamp(maxItemThrowsPerTick, 1, 64);
+    }
+
+    @Config(setter = @Config.Setter("setMaxItemThrowsInFlight"))
+    private static int maxItemThrowsInFlight = 32;
+    public static int getMaxItemThrowsInFlight() {
+        return maxItemThrowsInFlight;
+    }
+    public static void setMaxItemThrowsInFlight(int maxItemThrowsInFlight) {
+        Configs.maxItemThrowsInFlight = MathHelper.clamp(maxItemThrowsInFlight, 1, 1000);
+    }
+
     @Config(temporary = true)
     public static boolean infiniteTools = false;
 
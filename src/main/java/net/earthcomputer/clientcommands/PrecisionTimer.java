@@ -0,0 +1,99 @@
+package net.earthcomputer.clientcommands;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Runs tasks at a precise {@link System#nanoTime()} without busy-waiting for the whole delay. The timer thread parks
+ * until shortly before the target time, then spins for the remaining window, which is kept just above how late
+ * {@link LockSupport#parkNanos(long)} tends to wake up on this system. How late each task actually fires is recorded.
+ */
+public final class PrecisionTimer {
+    private static final long MIN_SPIN_WINDOW_NANOS = 200_000;
+    private static final long MAX_SPIN_WINDOW_NANOS = 2_000_000;
+    // tasks are woken up by the executor this long before the target time, parking covers the rest
+    private static final long COARSE_WAKE_MARGIN_NANOS = 20_000_000;
+
+    private final ScheduledExecutorService executor;
+
+    // only written by the timer thread
+    private volatile long parkOvershootNanos = MIN_SPIN_WINDOW_NANOS;
+    private volatile long lastLatenessNanos;
+    private volatile long maxLatenessNanos;
+    private volatile double meanLatenessNanos;
+    private volatile int firedCount;
+
+    public PrecisionTimer(String name) {
+        this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat(name).setDaemon(true).build());
+    }
+
+    /**
+     * Runs the task on the timer thread as close as possible to the given {@link System#nanoTime()}. The task is
+     * dropped if the cancellation check returns {@code true} at any point before it runs.
+     */
+    public void schedule(long targetNanoTime, BooleanSupplier cancelled, Runnable task) {
+        long coarseDelay = targetNanoTime - System.nanoTime() - COARSE_WAKE_MARGIN_NANOS;
+        executor.schedule(() -> {
+            if (waitUntil(targetNanoTime, cancelled)) {
+                recordLateness(System.nanoTime() - targetNanoTime);
+                task.run();
+            }
+        }, Math.max(0, coarseDelay), TimeUnit.NANOSECONDS);
+    }
+
+    private boolean waitUntil(long targetNanoTime, BooleanSupplier cancelled) {
+        while (true) {
+            if (cancelled.getAsBoolean()) {
+                return false;
+            }
+            long now = System.nanoTime();
+            long remaining = targetNanoTime - now;
+            if (remaining <= 0) {
+                return true;
+            }
+
+            long spinWindow = Math.max(MIN_SPIN_WINDOW_NANOS, Math.min(MAX_SPIN_WINDOW_NANOS, parkOvershootNanos * 2));
+            if (remaining > spinWindow) {
+                long parkTime = remaining - spinWindow;
+                LockSupport.parkNanos(parkTime);
+                long overshoot = System.nanoTime() - now - parkTime;
+                // decays slowly, so that a single quick wake up doesn't shrink the spin window too much
+                parkOvershootNanos = Math.max(overshoot, parkOvershootNanos - (parkOvershootNanos >> 4));
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+
+    private void recordLateness(long latenessNanos) {
+        int count = firedCount + 1;
+        lastLatenessNanos = latenessNanos;
+        maxLatenessNanos = Math.max(maxLatenessNanos, latenessNanos);
+        meanLatenessNanos += (latenessNanos - meanLatenessNanos) / count;
+        firedCount = count;
+    }
+
+    /**
+     * How late the last task fired, in nanoseconds
+     */
+    public long getLastLatenessNanos() {
+        return lastLatenessNanos;
+    }
+
+    public long getMaxLatenessNanos() {
+        return maxLatenessNanos;
+    }
+
+    public double getMeanLatenessNanos() {
+        return meanLatenessNanos;
+    }
+
+    public int getFiredCount() {
+        return firedCount;
+    }
+}
@@ -0,0 +1,136 @@
+package net.earthcomputer.clientcommands;
+
+/**
+ * Estimates how long the server takes per tick, from the arrival times of world time packets. These carry the server
+ * tick count, so the number of ticks between two of them is known exactly. Other packets sent at the end of a tick,
+ * such as entity spawns, aren't used, because their tick count could only be guessed from the estimate itself. Arrival
+ * times are corrected for the one way network delay using the latest ping.
+ *
+ * <p>Samples are combined into an exponentially weighted mean and variance, started off with Welford's algorithm.
+ * Samples far from the mean are rejected as outliers, unless several arrive in a row, in which case the server's tick
+ * rate has changed and the estimate is restarted.</p>
+ */
+public final class ServerTickClock {
+    public static final double DEFAULT_MSPT = 50;
+
+    // samples until the estimate switches from a plain to an exponentially weighted mean
+    private static final int WARMUP_SAMPLES = 5;
+    // weight of a sample spanning 20 ticks, i.e. a normal world time packet
+    private static final double ALPHA = 0.1;
+    private static final int FULL_WEIGHT_TICKS = 20;
+    private static final double OUTLIER_SIGMAS = 4;
+    // the standard deviation is assumed to be at least this much when rejecting outliers, so that a very steady
+    // server doesn't reject everything
+    private static final double MIN_OUTLIER_STANDARD_DEVIATION = 1;
+    private static final int OUTLIERS_BEFORE_RESTART = 3;
+    private static final double CONFIDENCE_Z_SCORE = 1.96;
+
+    private static int sampleCount;
+    private static double mean = DEFAULT_MSPT;
+    private static double varianceSum;
+    private static double variance;
+    private static int consecutiveOutliers;
+
+    private static long lastWorldTimeArrival;
+    private static long lastWorldTime = -1;
+    private static int lastWorldTimeTicks;
+
+    /**
+     * Called on the network thread when a world time packet arrives
+     */
+    public static synchronized void onWorldTimeUpdate(long arrivalNanos, long worldTime, int pingMillis) {
+        long arrival = correctForPing(arrivalNanos, pingMillis);
+        lastWorldTimeTicks = 0;
+        if (lastWorldTime != -1) {
+            long ticks = worldTime - lastWorldTime;
+            if (ticks <= 0) {
+                // changed world or similar
+                reset();
+            } else {
+                lastWorldTimeTicks = (int) Math.min(Integer.MAX_VALUE, ticks);
+                addSample((arrival - lastWorldTimeArrival) / 1_000_000.0 / ticks, ticks);
+            }
+        }
+        lastWorldTime = worldTime;
+        lastWorldTimeArrival = arrival;
+    }
+
+    private static long correctForPing(long arrivalNanos, int pingMillis) {
+        return pingMillis < 0 ? arrivalNanos : arrivalNanos - pingMillis * 500_000L;
+    }
+
+    private static void addSample(double mspt, long ticks) {
+        if (sampleCount < WARMUP_SAMPLES) {
+            sampleCount++;
+            double delta = mspt - mean;
+            mean += delta / sampleCount;
+            varianceSum += delta * (mspt - mean);
+            variance = sampleCount > 1 ? varianceSum / (sampleCount - 1) : 0;
+            return;
+        }
+
+        double standardDeviation = Math.max(Math.sqrt(variance), MIN_OUTLIER_STANDARD_DEVIATION);
+        if (Math.abs(mspt - mean) > OUTLIER_SIGMAS * standardDeviation) {
+            if (++consecutiveOutliers < OUTLIERS_BEFORE_RESTART) {
+                return;
+            }
+            restartEstimate();
+            addSample(mspt, ticks);
+            return;
+        }
+        consecutiveOutliers = 0;
+
+        double alpha = ALPHA * Math.min(1, (double) ticks / FULL_WEIGHT_TICKS);
+        double delta = mspt - mean;
+        double increment = alpha * delta;
+        mean += increment;
+        variance = (1 - alpha) * (variance + delta * increment);
+        sampleCount++;
+    }
+
+    private static void restartEstimate() {
+        sampleCount = 0;
+        mean = DEFAULT_MSPT;
+        varianceSum = 0;
+        variance = 0;
+        consecutiveOutliers = 0;
+    }
+
+    public static synchronized void reset() {
+        restartEstimate();
+        lastWorldTime = -1;
+        lastWorldTimeTicks = 0;
+    }
+
+    /**
+     * The estimated number of milliseconds per server tick
+     */
+    public static synchronized double getMspt() {
+        return mean;
+    }
+
+    /**
+     * The variance of the individual MSPT samples, in square milliseconds
+     */
+    public static synchronized double getMsptVariance() {
+        return variance;
+    }
+
+    /**
+     * The half width of the 95% confidence interval of {@link #getMspt()}
+     */
+    public static synchronized double getMsptConfidenceInterval() {
+        if (sampleCount < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double effectiveSamples = sampleCount <= WARMUP_SAMPLES ? sampleCount : Math.min(sampleCount, (2 - ALPHA) / ALPHA);
+        return CONFIDENCE_Z_SCORE * Math.sqrt(variance / effectiveSamples);
+    }
+
+    /**
+     * The number of server ticks between the last two world time packets, or 0 if unknown
+     */
+    public static synchronized int getLastWorldTimeTicks() {
+        return lastWorldTimeTicks;
+    }
+}
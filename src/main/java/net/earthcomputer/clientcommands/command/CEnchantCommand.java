@@ -14,6 +14,7 @@ import net.minecraft.item.Items;
 import net.minecraft.text.MutableText;
 import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
+import org.jetbrains.annotations.Nullable;
 
 import static net.earthcomputer.clientcommands.command.ClientCommandHelper.*;
 import static net.earthcomputer.clientcommands.command.arguments.ItemAndEnchantmentsPredicateArgumentType.*;
@@ -54,11 +55,18 @@ public class CEnchantCommand {
 
         boolean simulate = getFlag(source, FLAG_SIMULATE);
 
-        var result = EnchantmentCracker.manipulateEnchantments(
-                itemAndEnchantmentsPredicate.item(),
-                itemAndEnchantmentsPredicate.predicate(),
-                simulate
+        String taskName = EnchantmentCracker.manipulateEnchantments(
+                itemAndEnchantmentsPredicate,
+                simulate,
+                result -> onSearchCompleted(source, result, simulate)
         );
+        source.sendFeedback(Text.translatable("commands.cenchant.searching")
+                .append(" ")
+                .append(getCommandTextComponent("commands.client.cancel", "/ctask stop " + taskName)));
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static void onSearchCompleted(FabricClientCommandSource source, @Nullable EnchantmentCracker.ManipulateResult result, boolean simulate) {
         if (result == null) {
             source.sendFeedback(Text.translatable("commands.cenchant.failed"));
             if (Configs.playerCrackState != PlayerRandCracker.CrackState.CRACKED) {
@@ -83,7 +91,6 @@ public class CEnchantCommand {
                 source.sendFeedback(Text.translatable("commands.cenchant.success"));
             }
         }
-        return Command.SINGLE_SUCCESS;
     }
 
 }
@@ -6,8 +6,12 @@ import com.mojang.brigadier.exceptions.CommandSyntaxException;
 import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
 import net.earthcomputer.clientcommands.Configs;
 import net.earthcomputer.clientcommands.MultiVersionCompat;
+import net.earthcomputer.clientcommands.PrecisionTimer;
+import net.earthcomputer.clientcommands.ServerTickClock;
 import net.earthcomputer.clientcommands.command.arguments.ClientItemPredicateArgumentType;
 import net.earthcomputer.clientcommands.features.FishingCracker;
+import net.earthcomputer.clientcommands.features.FishingSimulationProfiler;
+import net.earthcomputer.clientcommands.features.FishingTimingModel;
 import net.fabricmc.fabric.api.client.command.v2.FabricClientCommandSource;
 import net.minecraft.command.CommandRegistryAccess;
 import net.minecraft.item.Item;
@@ -16,6 +20,8 @@ import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
 import org.apache.commons.lang3.tuple.Pair;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import static com.mojang.brigadier.arguments.IntegerArgumentType.*;
@@ -51,7 +57,9 @@ public class FishCommand {
                     .executes(ctx -> addEnchantedGoal(ctx.getSource(), getWithString(ctx, "goal", ItemAndEnchantmentsPredicate.class)))))
             .then(literal("remove-goal")
                 .then(argument("index", integer(1))
-                    .executes(ctx -> removeGoal(ctx.getSource(), getInteger(ctx, "index"))))));
+                    .executes(ctx -> removeGoal(ctx.getSource(), getInteger(ctx, "index")))))
+            .then(literal("stats")
+                .executes(ctx -> showStats(ctx.getSource()))));
     }
 
     private static int listGoals(FabricClientCommandSource source) throws CommandSyntaxException {
@@ -59,16 +67,17 @@ public class FishCommand {
             throw NEED_FISHING_MANIPULATION_EXCEPTION.create();
         }
 
-        if (FishingCracker.goals.isEmpty()) {
+        List<ClientItemPredicate> goals = FishingCracker.getGoals();
+        if (goals.isEmpty()) {
             source.sendFeedback(Text.translatable("commands.cfish.listGoals.noGoals").styled(style -> style.withColor(Formatting.RED)));
         } else {
-            source.sendFeedback(Text.translatable("commands.cfish.listGoals.success", FishingCracker.goals.size()));
-            for (int i = 0; i < FishingCracker.goals.size(); i++) {
-                source.sendFeedback(Text.of((i + 1) + ": " + FishingCracker.goals.get(i).getPrettyString()));
+            source.sendFeedback(Text.translatable("commands.cfish.listGoals.success", goals.size()));
+            for (int i = 0; i < goals.size(); i++) {
+                source.sendFeedback(Text.of((i + 1) + ": " + goals.get(i).getPrettyString()));
             }
         }
 
-        return FishingCracker.goals.size();
+        return goals.size();
     }
 
     private static int addGoal(FabricClientCommandSource source, ClientItemPredicateArgumentType.ClientItemPredicate goal) throws CommandSyntaxException {
@@ -76,11 +85,11 @@ public class FishCommand {
             throw NEED_FISHING_MANIPULATION_EXCEPTION.create();
         }
 
-        FishingCracker.goals.add(goal);
+        FishingCracker.addGoal(goal);
 
         source.sendFeedback(Text.translatable("commands.cfish.addGoal.success", goal.getPrettyString()));
 
-        return FishingCracker.goals.size();
+        return FishingCracker.getGoals().size();
     }
 
     private static int addEnchantedGoal(FabricClientCommandSource source, Pair<String, ItemAndEnchantmentsPredicate> stringAndItemAndEnchantments) throws CommandSyntaxException {
@@ -93,11 +102,11 @@ public class FishCommand {
 
         ClientItemPredicate goal = new EnchantedItemPredicate(string, itemAndEnchantments);
 
-        FishingCracker.goals.add(goal);
+        FishingCracker.addGoal(goal);
 
         source.sendFeedback(Text.translatable("commands.cfish.addGoal.success", string));
 
-        return FishingCracker.goals.size();
+        return FishingCracker.getGoals().size();
     }
 
     private static int removeGoal(FabricClientCommandSource source, int index) throws CommandSyntaxException {
@@ -105,13 +114,72 @@ public class FishCommand {
             throw NEED_FISHING_MANIPULATION_EXCEPTION.create();
         }
 
-        if (index > FishingCracker.goals.size()) {
-            throw CommandSyntaxException.BUILT_IN_EXCEPTIONS.integerTooHigh().create(index, FishingCracker.goals.size());
+        if (index > FishingCracker.getGoals().size()) {
+            throw CommandSyntaxException.BUILT_IN_EXCEPTIONS.integerTooHigh().create(index, FishingCracker.getGoals().size());
         }
-        ClientItemPredicate goal = FishingCracker.goals.remove(index - 1);
+        ClientItemPredicate goal = FishingCracker.removeGoal(index - 1);
 
         source.sendFeedback(Text.translatable("commands.cfish.removeGoal.success", goal.getPrettyString()));
 
-        return FishingCracker.goals.size();
+        return FishingCracker.getGoals().size();
+    }
+
+    private static int showStats(FabricClientCommandSource source) throws CommandSyntaxException {
+        if (!Configs.getFishingManipulation().isEnabled()) {
+            throw NEED_FISHING_MANIPULATION_EXCEPTION.create();
+        }
+
+        FishingTimingModel timingModel = FishingCracker.getTimingModel();
+        source.sendFeedback(Text.translatable("commands.cfish.stats.correction",
+            timingModel.getCorrection(),
+            Math.round(timingModel.getSigma()),
+            Math.round(timingModel.getPacketLossRate() * 100)));
+        source.sendFeedback(Text.translatable("commands.cfish.stats.catches",
+            timingModel.getCorrectCatches(),
+            timingModel.getWrongCatches(),
+            timingModel.getUnmatchedCatches()));
+
+        int[] offsetCounts = timingModel.getOffsetCounts();
+        List<String> offsets = new ArrayList<>();
+        for (int i = 0; i < offsetCounts.length; i++) {
+            if (offsetCounts[i] != 0) {
+                offsets.add((i - offsetCounts.length / 2) + ": " + offsetCounts[i]);
+            }
+        }
+        source.sendFeedback(Text.translatable("commands.cfish.stats.offsets", String.join(", ", offsets)));
+
+        int[] msptCounts = timingModel.getMsptCounts();
+        List<String> mspts = new ArrayList<>();
+        for (int i = 0; i < msptCounts.length; i++) {
+            if (msptCounts[i] != 0) {
+                String bucket = i == msptCounts.length - 1 ? i * FishingTimingModel.MSPT_BUCKET_WIDTH + "+" : String.valueOf(i * FishingTimingModel.MSPT_BUCKET_WIDTH);
+                mspts.add(bucket + "ms: " + msptCounts[i]);
+            }
+        }
+        source.sendFeedback(Text.translatable("commands.cfish.stats.mspt", String.join(", ", mspts)));
+        source.sendFeedback(Text.translatable("commands.cfish.stats.tickClock",
+            String.format("%.1f", ServerTickClock.getMspt()),
+            String.format("%.1f", ServerTickClock.getMsptConfidenceInterval())));
+
+        PrecisionTimer reelInTimer = FishingCracker.getReelInTimer();
+        if (reelInTimer.getFiredCount() != 0) {
+            source.sendFeedback(Text.translatable("commands.cfish.stats.timer",
+                Math.round(reelInTimer.getMeanLatenessNanos() / 1000),
+                reelInTimer.getMaxLatenessNanos() / 1000,
+                reelInTimer.getLastLatenessNanos() / 1000,
+                reelInTimer.getFiredCount()));
+        }
+
+        FishingSimulationProfiler simulationProfiler = FishingCracker.getSimulationProfiler();
+        if (simulationProfiler.getSimulations() != 0) {
+            double bytesPerTick = simulationProfiler.getBytesPerTick();
+            source.sendFeedback(Text.translatable("commands.cfish.stats.simulation",
+                Math.round(simulationProfiler.getTicksPerSecond()),
+                bytesPerTick < 0 ? "?" : String.valueOf(Math.round(bytesPerTick)),
+                String.format("%.2f", simulationProfiler.getMeanCaptureMillis()),
+                simulationProfiler.getSimulations()));
+        }
+
+        return timingModel.getCorrectCatches() + timingModel.getWrongCatches() + timingModel.getUnmatchedCatches();
     }
 }
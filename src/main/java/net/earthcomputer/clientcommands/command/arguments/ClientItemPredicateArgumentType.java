@@ -71,7 +71,7 @@ public class ClientItemPredicateArgumentType implements ArgumentType<ClientItemP
         Collection<Item> getPossibleItems();
     }
 
-    record TagPredicate(String id, RegistryEntryList<Item> tag, NbtCompound compound) implements ClientItemPredicate {
+    public record TagPredicate(String id, RegistryEntryList<Item> tag, NbtCompound compound) implements ClientItemPredicate {
         @Override
         public boolean test(ItemStack stack) {
             return tag.contains(stack.getRegistryEntry()) && NbtHelper.matches(this.compound, stack.getNbt(), true);
@@ -92,7 +92,7 @@ public class ClientItemPredicateArgumentType implements ArgumentType<ClientItemP
         }
     }
 
-    record ItemPredicate(RegistryEntry<Item> item, NbtCompound compound) implements ClientItemPredicate {
+    public record ItemPredicate(RegistryEntry<Item> item, NbtCompound compound) implements ClientItemPredicate {
         @Override
         public boolean test(ItemStack stack) {
             return stack.itemMatches(item) && NbtHelper.matches(this.compound, stack.getNbt(), true);
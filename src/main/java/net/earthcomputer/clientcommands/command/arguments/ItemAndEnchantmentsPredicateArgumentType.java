@@ -101,7 +101,7 @@ public class ItemAndEnchantmentsPredicateArgumentType implements ArgumentType<It
             return true;
         };
 
-        return new ItemAndEnchantmentsPredicate(parser.item, predicate, parser.with.size());
+        return new ItemAndEnchantmentsPredicate(parser.item, predicate, parser.with.size(), List.copyOf(parser.with), List.copyOf(parser.without), parser.exact);
     }
 
     @Override
@@ -127,7 +127,13 @@ public class ItemAndEnchantmentsPredicateArgumentType implements ArgumentType<It
         return EXAMPLES;
     }
 
-    public record ItemAndEnchantmentsPredicate(Item item, Predicate<List<EnchantmentLevelEntry>> predicate, int numEnchantments) implements Predicate<ItemStack> {
+    /**
+     * @param with The enchantments required, with a level of -1 for any level
+     * @param without The enchantments not allowed, with a level of -1 for any level, ignored if exact
+     * @param exact Whether only the required enchantments are allowed
+     */
+    public record ItemAndEnchantmentsPredicate(Item item, Predicate<List<EnchantmentLevelEntry>> predicate, int numEnchantments,
+                                               List<EnchantmentLevelEntry> with, List<EnchantmentLevelEntry> without, boolean exact) implements Predicate<ItemStack> {
         @Override
         public boolean test(ItemStack stack) {
             if (item != stack.getItem() && (item != Items.BOOK || stack.getItem() != Items.ENCHANTED_BOOK)) {
@@ -0,0 +1,208 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.entity.Entity;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.CollisionView;
+import net.minecraft.world.World;
+import net.minecraft.world.border.WorldBorder;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An immutable copy of the blocks a chorus fruit teleport could land on, so that landing spots can be checked from
+ * several threads without touching the client world. Implements {@link CollisionView}, so the vanilla collision checks
+ * run against it unchanged.
+ */
+class ChorusLandingSnapshot implements CollisionView {
+    // a chorus fruit teleports up to 8 blocks away, and collision checks look another block further
+    private static final int TELEPORT_RADIUS = 8;
+    private static final int MARGIN = 2;
+    // the landing search doesn't go below y=0, see ChorusManipulation.canTeleport
+    private static final int LOWEST_SEARCHED_Y = -1;
+
+    private final int bottomY;
+    private final int height;
+
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+
+    private final BlockState[] states;
+    private final boolean[] loadedColumns;
+    private final WorldBorder worldBorder;
+    private final List<VoxelShape> entityCollisions;
+
+    private ChorusLandingSnapshot(
+        int bottomY,
+        int height,
+        int minX,
+        int minY,
+        int minZ,
+        int sizeX,
+        int sizeY,
+        int sizeZ,
+        BlockState[] states,
+        boolean[] loadedColumns,
+        WorldBorder worldBorder,
+        List<VoxelShape> entityCollisions
+    ) {
+        this.bottomY = bottomY;
+        this.height = height;
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.states = states;
+        this.loadedColumns = loadedColumns;
+        this.worldBorder = worldBorder;
+        this.entityCollisions = entityCollisions;
+    }
+
+    /**
+     * Copies the blocks around a player eating a chorus fruit at the given position. Must be called on the client
+     * thread.
+     */
+    static ChorusLandingSnapshot capture(World world, Vec3d pos) {
+        int radius = TELEPORT_RADIUS + MARGIN;
+        int minX = MathHelper.floor(pos.x) - radius;
+        int minZ = MathHelper.floor(pos.z) - radius;
+        int minY = Math.max(world.getBottomY(), LOWEST_SEARCHED_Y);
+        int maxY = Math.min(world.getTopY() - 1, MathHelper.floor(pos.y) + TELEPORT_RADIUS + MARGIN + 1);
+        int sizeX = radius * 2 + 1;
+        int sizeZ = radius * 2 + 1;
+        int sizeY = Math.max(0, maxY - minY + 1);
+
+        BlockState[] states = new BlockState[sizeX * sizeY * sizeZ];
+        boolean[] loadedColumns = new boolean[sizeX * sizeZ];
+        BlockPos.Mutable mutable = new BlockPos.Mutable();
+        for (int z = 0; z < sizeZ; z++) {
+            for (int x = 0; x < sizeX; x++) {
+                loadedColumns[z * sizeX + x] = world.isChunkLoaded(mutable.set(minX + x, 0, minZ + z));
+                for (int y = 0; y < sizeY; y++) {
+                    states[(y * sizeZ + z) * sizeX + x] = world.getBlockState(mutable.set(minX + x, minY + y, minZ + z));
+                }
+            }
+        }
+
+        WorldBorder worldBorder = new WorldBorder();
+        worldBorder.load(world.getWorldBorder().write());
+        Box area = new Box(minX, minY, minZ, minX + sizeX, minY + sizeY, minZ + sizeZ);
+        return new ChorusLandingSnapshot(
+            world.getBottomY(),
+            world.getHeight(),
+            minX,
+            minY,
+            minZ,
+            sizeX,
+            sizeY,
+            sizeZ,
+            states,
+            loadedColumns,
+            worldBorder,
+            List.copyOf(world.getEntityCollisions(null, area))
+        );
+    }
+
+    public boolean isChunkLoaded(BlockPos pos) {
+        int x = pos.getX() - minX;
+        int z = pos.getZ() - minZ;
+        return x >= 0 && z >= 0 && x < sizeX && z < sizeZ && loadedColumns[z * sizeX + x];
+    }
+
+    /**
+     * Same as {@link net.minecraft.world.WorldView#containsFluid(Box)}
+     */
+    public boolean containsFluid(Box box) {
+        int minX = MathHelper.floor(box.minX);
+        int maxX = MathHelper.ceil(box.maxX);
+        int minY = MathHelper.floor(box.minY);
+        int maxY = MathHelper.ceil(box.maxY);
+        int minZ = MathHelper.floor(box.minZ);
+        int maxZ = MathHelper.ceil(box.maxZ);
+        for (int x = minX; x < maxX; x++) {
+            for (int y = minY; y < maxY; y++) {
+                for (int z = minZ; z < maxZ; z++) {
+                    if (!getBlockState(x, y, z).getFluidState().isEmpty()) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    @Override
+    public BlockEntity getBlockEntity(BlockPos pos) {
+        return null;
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        return getBlockState(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public BlockState getBlockState(int x, int y, int z) {
+        x -= minX;
+        y -= minY;
+        z -= minZ;
+        if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) {
+            return Blocks.VOID_AIR.getDefaultState();
+        }
+        return states[(y * sizeZ + z) * sizeX + x];
+    }
+
+    @Override
+    public FluidState getFluidState(BlockPos pos) {
+        return getBlockState(pos).getFluidState();
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getBottomY() {
+        return bottomY;
+    }
+
+    @Override
+    public WorldBorder getWorldBorder() {
+        return worldBorder;
+    }
+
+    @Override
+    public BlockView getChunkAsView(int chunkX, int chunkZ) {
+        return this;
+    }
+
+    @Override
+    public List<VoxelShape> getEntityCollisions(@Nullable Entity entity, Box box) {
+        // same margin as EntityView.getEntityCollisions
+        Box expandedBox = box.expand(1.0E-7);
+        List<VoxelShape> collisions = new ArrayList<>();
+        for (VoxelShape shape : entityCollisions) {
+            if (shape.getBoundingBox().intersects(expandedBox)) {
+                collisions.add(shape);
+            }
+        }
+        return collisions;
+    }
+}
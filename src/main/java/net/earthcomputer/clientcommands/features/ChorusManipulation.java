@@ -14,7 +14,9 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Box;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.Vec3d;
-import net.minecraft.world.World;
+import net.minecraft.util.math.random.Random;
+
+import java.util.function.Function;
 
 import static net.earthcomputer.clientcommands.command.ClientCommandHelper.*;
 import static net.earthcomputer.clientcommands.features.PlayerRandCracker.*;
@@ -91,40 +93,40 @@ public class ChorusManipulation {
             return false;
         }
 
-        var throwItemsState =
-                throwItemsUntil(rand -> {
-
-                    if (particleCount != 16 && itemUseTimeLeft >= 0) {
-                        //159 - (7-(itemUseTimeLeft/4)) * 18 = 33 + 4.5 * itemUseTimeLeft
-                        for (int i = 0; i < 33 + 4.5 * itemUseTimeLeft; i++) {
-                            rand.nextInt();
-                        }
-                    }
-
-                    final double x = (rand.nextDouble() - 0.5D) * 16.0D + pos.getX();
-                    ClientWorld world = MinecraftClient.getInstance().world;
-                    assert world != null;
-                    final double y = MathHelper.clamp(pos.getY() + (double) (rand.nextInt(16) - 8), world.getBottomY(), (world.getBottomY() + world.getHeight() - 1));
-                    final double z = (rand.nextDouble() - 0.5D) * 16.0D + pos.getZ();
-                    final Vec3d landingArea = canTeleport(area, new Vec3d(x, y, z));
-
-                    if (landingArea != null) {
-                        if (itemUseTimeLeft == 24) { // || itemUseTimeLeft == 0
-                            sendFeedback(Text.translatable("chorusManip.landing.success", Math.round(landingArea.getX() * 100) / 100.0,
-                                    Math.round(landingArea.getY() * 100) / 100.0,
-                                    Math.round(landingArea.getZ() * 100) / 100.0));
-                        }
-                        return true;
-                    } else {
-                        return false;
-                    }
-                }, Configs.getMaxChorusItemThrows());
+        ClientWorld world = MinecraftClient.getInstance().world;
+        assert world != null;
+        ChorusLandingSnapshot snapshot = ChorusLandingSnapshot.capture(world, pos);
+        // called from several threads by throwItemsUntil, so must not have side effects or read the client world
+        Function<Random, Vec3d> landingArea = rand -> {
+            if (particleCount != 16 && itemUseTimeLeft >= 0) {
+                //159 - (7-(itemUseTimeLeft/4)) * 18 = 33 + 4.5 * itemUseTimeLeft
+                for (int i = 0; i < 33 + 4.5 * itemUseTimeLeft; i++) {
+                    rand.nextInt();
+                }
+            }
+
+            final double x = (rand.nextDouble() - 0.5D) * 16.0D + pos.getX();
+            final double y = MathHelper.clamp(pos.getY() + (double) (rand.nextInt(16) - 8), snapshot.getBottomY(), (snapshot.getBottomY() + snapshot.getHeight() - 1));
+            final double z = (rand.nextDouble() - 0.5D) * 16.0D + pos.getZ();
+            return canTeleport(snapshot, area, new Vec3d(x, y, z));
+        };
+
+        long seed = PlayerRandCracker.getSeed();
+        var throwItemsState = throwItemsUntil(rand -> landingArea.apply(rand) != null, Configs.getMaxChorusItemThrows());
         if (!throwItemsState.getType().isSuccess()) {
             sendError(throwItemsState.getMessage());
             MinecraftClient.getInstance().inGameHud.setOverlayMessage(
                     Text.translatable("chorusManip.landing.failed").formatted(Formatting.RED), false);
             return false;
         } else {
+            if (itemUseTimeLeft == 24) { // || itemUseTimeLeft == 0
+                Vec3d landing = landingArea.apply(LcgRandom.ofInternalSeed(advanceThrows(seed, throwItemsState.getItemsThrown())));
+                if (landing != null) {
+                    sendFeedback(Text.translatable("chorusManip.landing.success", Math.round(landing.getX() * 100) / 100.0,
+                            Math.round(landing.getY() * 100) / 100.0,
+                            Math.round(landing.getZ() * 100) / 100.0));
+                }
+            }
             return true;
         }
     }
@@ -149,11 +151,10 @@ public class ChorusManipulation {
      * @return The Position, where the player lands
      * @see net.minecraft.entity.LivingEntity#teleport(double, double, double, boolean) (Vec3d)
      */
-    public static Vec3d canTeleport(Box goalArea, Vec3d goalVec) {
+    static Vec3d canTeleport(ChorusLandingSnapshot world, Box goalArea, Vec3d goalVec) {
         BlockPos blockPos = BlockPos.ofFloored(goalVec);
-        World world = MinecraftClient.getInstance().world;
 
-        if (world != null && world.isChunkLoaded(blockPos)) {
+        if (world.isChunkLoaded(blockPos)) {
             boolean blockBelowIsGround = false;
 
             while (!blockBelowIsGround && blockPos.getY() > 0) {
@@ -1,8 +1,12 @@
 package net.earthcomputer.clientcommands.features;
 
 import com.mojang.logging.LogUtils;
+import net.earthcomputer.clientcommands.ClientCommands;
 import net.earthcomputer.clientcommands.MultiVersionCompat;
 import net.earthcomputer.clientcommands.Configs;
+import net.earthcomputer.clientcommands.command.ClientCommandHelper;
+import net.earthcomputer.clientcommands.command.arguments.ItemAndEnchantmentsPredicateArgumentType.ItemAndEnchantmentsPredicate;
+import net.earthcomputer.clientcommands.task.ItemThrowTask;
 import net.earthcomputer.clientcommands.task.LongTask;
 import net.earthcomputer.clientcommands.task.LongTaskList;
 import net.earthcomputer.clientcommands.task.OneTickTask;
@@ -15,32 +19,46 @@ import net.minecraft.client.font.TextRenderer;
 import net.minecraft.client.gui.DrawContext;
 import net.minecraft.client.gui.hud.ChatHud;
 import net.minecraft.client.network.ClientPlayerEntity;
+import net.minecraft.client.network.ServerInfo;
 import net.minecraft.client.resource.language.I18n;
+import net.minecraft.client.world.ClientWorld;
 import net.minecraft.enchantment.Enchantment;
 import net.minecraft.enchantment.EnchantmentHelper;
 import net.minecraft.enchantment.EnchantmentLevelEntry;
 import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
 import net.minecraft.network.packet.c2s.play.PlayerMoveC2SPacket;
 import net.minecraft.registry.Registries;
 import net.minecraft.screen.EnchantmentScreenHandler;
-import net.minecraft.screen.slot.Slot;
 import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
 import net.minecraft.util.StringIdentifiable;
+import net.minecraft.util.Util;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.random.Random;
 import net.minecraft.world.World;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
+import java.util.OptionalInt;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 
 public class EnchantmentCracker {
@@ -93,29 +111,78 @@ public class EnchantmentCracker {
 
     // RENDERING
     /*
-     * This section is in charge of rendering the overlay on the enchantment GUI
+     * This section is in charge of rendering the overlay on the enchantment GUI. The screen is redrawn every frame, so
+     * the text is only rebuilt when one of the things it shows has changed.
      */
 
+    private static final int OVERLAY_INPUT_COUNT = 15;
+    private static final int[] overlayInputs = new int[OVERLAY_INPUT_COUNT];
+    private static final int[] lastOverlayInputs = new int[OVERLAY_INPUT_COUNT];
+    @Nullable
+    private static Item lastOverlayItem;
+    @Nullable
+    private static String lastOverlayLanguage;
+    private static String[] overlayLines = new String[0];
+
     public static void drawEnchantmentGUIOverlay(DrawContext context) {
+        MinecraftClient mc = MinecraftClient.getInstance();
+        assert mc.player != null;
+        EnchantmentScreenHandler enchContainer = (EnchantmentScreenHandler) mc.player.currentScreenHandler;
+        int bookshelfCount = enchantingTablePos == null ? -1 : getEnchantPower(mc.world, enchantingTablePos);
+
+        overlayInputs[0] = Configs.enchCrackState.ordinal();
+        overlayInputs[1] = Configs.playerCrackState.ordinal();
+        overlayInputs[2] = PlayerRandCracker.getHypothesisCount();
+        overlayInputs[3] = possibleXPSeeds.getVersion();
+        overlayInputs[4] = bookshelfCount;
+        overlayInputs[5] = MultiVersionCompat.INSTANCE.getProtocolVersion();
+        for (int slot = 0; slot < 3; slot++) {
+            overlayInputs[6 + slot] = enchContainer.enchantmentPower[slot];
+            overlayInputs[9 + slot] = enchContainer.enchantmentId[slot];
+            overlayInputs[12 + slot] = enchContainer.enchantmentLevel[slot];
+        }
+        Item item = enchContainer.getSlot(0).getStack().getItem();
+        String language = mc.getLanguageManager().getLanguage();
+
+        if (!Arrays.equals(overlayInputs, lastOverlayInputs) || item != lastOverlayItem || !language.equals(lastOverlayLanguage)) {
+            System.arraycopy(overlayInputs, 0, lastOverlayInputs, 0, OVERLAY_INPUT_COUNT);
+            lastOverlayItem = item;
+            lastOverlayLanguage = language;
+            overlayLines = buildOverlayLines(bookshelfCount);
+        }
+
+        TextRenderer fontRenderer = mc.textRenderer;
+        int y = 0;
+        for (String line : overlayLines) {
+            context.drawText(fontRenderer, line, 0, y, 0xffffff, false);
+            y += fontRenderer.fontHeight;
+        }
+    }
+
+    private static String[] buildOverlayLines(int bookshelfCount) {
         CrackState crackState = Configs.enchCrackState;
 
         List<String> lines = new ArrayList<>();
 
         lines.add(I18n.translate("enchCrack.state", I18n.translate("enchCrack.state." + crackState.asString())));
         lines.add(I18n.translate("playerManip.state", I18n.translate("playerManip.state." + Configs.playerCrackState.asString())));
+        int hypotheses = PlayerRandCracker.getHypothesisCount();
+        if (hypotheses > 1) {
+            lines.add(I18n.translate("playerManip.hypotheses", hypotheses));
+        }
 
         lines.add("");
 
         if (crackState == CrackState.CRACKED) {
-            lines.add(I18n.translate("enchCrack.xpSeed.one", possibleXPSeeds.iterator().next()));
+            lines.add(I18n.translate("enchCrack.xpSeed.one", possibleXPSeeds.getFirst()));
         } else if (crackState == CrackState.CRACKING) {
             lines.add(I18n.translate("enchCrack.xpSeed.many", possibleXPSeeds.size()));
         }
 
         lines.add("");
 
-        if (enchantingTablePos != null) {
-            lines.add(I18n.translate("enchCrack.bookshelfCount", getEnchantPower(MinecraftClient.getInstance().world, enchantingTablePos)));
+        if (bookshelfCount != -1) {
+            lines.add(I18n.translate("enchCrack.bookshelfCount", bookshelfCount));
             lines.add("");
         }
 
@@ -135,12 +202,7 @@ public class EnchantmentCracker {
             }
         }
 
-        TextRenderer fontRenderer = MinecraftClient.getInstance().textRenderer;
-        int y = 0;
-        for (String line : lines) {
-            context.drawText(fontRenderer, line, 0, y, 0xffffff, false);
-            y += fontRenderer.fontHeight;
-        }
+        return lines.toArray(new String[0]);
     }
 
     // LOGIC
@@ -148,7 +210,7 @@ public class EnchantmentCracker {
      * This section is in charge of the logic of the cracking
      */
 
-    static Set<Integer> possibleXPSeeds = new HashSet<>(1 << 20);
+    static final XpSeedCandidates possibleXPSeeds = new XpSeedCandidates();
     private static int firstXpSeed;
     public static BlockPos enchantingTablePos = null;
     private static boolean doneEnchantment = false;
@@ -158,23 +220,15 @@ public class EnchantmentCracker {
         possibleXPSeeds.clear();
     }
 
-    private static void prepareForNextEnchantmentSeedCrack(int serverReportedXPSeed) {
-        serverReportedXPSeed &= 0x0000fff0;
-        for (int highBits = 0; highBits < 65536; highBits++) {
-            for (int low4Bits = 0; low4Bits < 16; low4Bits++) {
-                possibleXPSeeds.add((highBits << 16) | serverReportedXPSeed | low4Bits);
-            }
-        }
-    }
-
     public static void addEnchantmentSeedInfo(World world, EnchantmentScreenHandler container) {
         CrackState crackState = Configs.enchCrackState;
-        if (crackState == CrackState.CRACKED) {
+        ItemStack itemToEnchant = container.getSlot(0).getStack();
+        if (itemToEnchant.isEmpty() || !itemToEnchant.isEnchantable()) {
             return;
         }
 
-        ItemStack itemToEnchant = container.getSlot(0).getStack();
-        if (itemToEnchant.isEmpty() || !itemToEnchant.isEnchantable()) {
+        if (crackState == CrackState.CRACKED) {
+            checkPredictedXPSeed(container.getSeed());
             return;
         }
 
@@ -185,19 +239,16 @@ public class EnchantmentCracker {
 
         if (crackState == CrackState.UNCRACKED) {
             Configs.enchCrackState = CrackState.CRACKING;
-            prepareForNextEnchantmentSeedCrack(container.getSeed());
+            possibleXPSeeds.setAllMatchingReported(container.getSeed());
         }
         int power = getEnchantPower(world, tablePos);
 
-        Random rand = Random.create();
-        int[] actualEnchantLevels = container.enchantmentPower;
-        int[] actualEnchantmentClues = container.enchantmentId;
-        int[] actualLevelClues = container.enchantmentLevel;
+        int[] actualEnchantLevels = container.enchantmentPower.clone();
+        int[] actualEnchantmentClues = container.enchantmentId.clone();
+        int[] actualLevelClues = container.enchantmentLevel.clone();
 
         // brute force the possible seeds
-        Iterator<Integer> xpSeedItr = possibleXPSeeds.iterator();
-        seedLoop: while (xpSeedItr.hasNext()) {
-            int xpSeed = xpSeedItr.next();
+        possibleXPSeeds.filter((rand, xpSeed) -> {
             rand.setSeed(xpSeed);
 
             // check enchantment levels match
@@ -207,8 +258,7 @@ public class EnchantmentCracker {
                     level = 0;
                 }
                 if (level != actualEnchantLevels[slot]) {
-                    xpSeedItr.remove();
-                    continue seedLoop;
+                    return false;
                 }
             }
 
@@ -220,30 +270,46 @@ public class EnchantmentCracker {
                     if (enchantments == null || enchantments.isEmpty()) {
                         // check that there is indeed no enchantment clue
                         if (actualEnchantmentClues[slot] != -1 || actualLevelClues[slot] != -1) {
-                            xpSeedItr.remove();
-                            continue seedLoop;
+                            return false;
                         }
                     } else {
                         // check the right enchantment clue was generated
                         EnchantmentLevelEntry clue = enchantments.get(rand.nextInt(enchantments.size()));
                         if (Registries.ENCHANTMENT.getRawId(clue.enchantment) != actualEnchantmentClues[slot]
                                 || clue.level != actualLevelClues[slot]) {
-                            xpSeedItr.remove();
-                            continue seedLoop;
+                            return false;
                         }
                     }
                 }
             }
-        }
+            return true;
+        });
 
         // test the outcome, see if we need to change state
-        if (possibleXPSeeds.size() == 0) {
+        if (possibleXPSeeds.isEmpty()) {
             Configs.enchCrackState = CrackState.UNCRACKED;
             LOGGER.warn(
                     "Invalid enchantment seed information. Has the server got unknown mods, is there a desync, or is the client just bugged?");
         } else if (possibleXPSeeds.size() == 1) {
             Configs.enchCrackState = CrackState.CRACKED;
-            addPlayerRNGInfo(possibleXPSeeds.iterator().next());
+            addPlayerRNGInfo(possibleXPSeeds.getFirst());
+        }
+    }
+
+    /**
+     * Checks the XP seed predicted from the player RNG against the bits of it the server reports, which narrows down
+     * which seed the player RNG has if it has been forked by uncertain events
+     */
+    private static void checkPredictedXPSeed(int serverReportedXPSeed) {
+        if (possibleXPSeeds.size() != 1 || !Configs.playerCrackState.knowsSeed()) {
+            return;
+        }
+
+        OptionalInt xpSeed = PlayerRandCracker.onXpSeedObserved(serverReportedXPSeed, 0x0000fff0);
+        if (xpSeed.isPresent()) {
+            possibleXPSeeds.set(xpSeed.getAsInt());
+        } else if (!Configs.playerCrackState.knowsSeed()) {
+            resetCracker();
         }
     }
 
@@ -281,11 +347,12 @@ public class EnchantmentCracker {
 
     public static void onEnchantedItem() {
         if (Configs.playerCrackState == PlayerRandCracker.CrackState.UNCRACKED && !isEnchantingPredictionEnabled()) {
+            // the XP seed may have been loaded from a previous session, and is now out of date
+            resetCracker();
             return;
         }
         if (Configs.playerCrackState.knowsSeed()) {
-            possibleXPSeeds.clear();
-            possibleXPSeeds.add(PlayerRandCracker.nextInt());
+            possibleXPSeeds.set(PlayerRandCracker.nextXpSeed());
             Configs.playerCrackState = PlayerRandCracker.CrackState.CRACKED;
             Configs.enchCrackState = CrackState.CRACKED;
         } else if (Configs.playerCrackState == PlayerRandCracker.CrackState.HALF_CRACKED) {
@@ -305,66 +372,290 @@ public class EnchantmentCracker {
         doneEnchantment = true;
     }
 
+    // PERSISTENCE
+    /*
+     * The server saves the XP seed with the player, so what we know about it is still valid after reconnecting. The
+     * player RNG is not saved, as the server creates a new player with a new RNG whenever the player joins.
+     */
+
+    @Nullable
+    private static Path getStateFile() {
+        MinecraftClient mc = MinecraftClient.getInstance();
+        ServerInfo serverInfo = mc.getCurrentServerEntry();
+        UUID playerUuid = mc.getSession().getUuidOrNull();
+        if (serverInfo == null || playerUuid == null) {
+            return null;
+        }
+        return ClientCommands.configDir.resolve("enchanting").resolve(ClientCommands.toFileName(serverInfo.address) + "_" + playerUuid + ".dat");
+    }
+
+    public static void loadState() {
+        Path file = getStateFile();
+        if (file == null || !Files.exists(file)) {
+            return;
+        }
+
+        try {
+            NbtCompound rootTag = NbtIo.read(file);
+            if (rootTag == null) {
+                return;
+            }
+            String crackStateName = rootTag.getString("CrackState");
+            CrackState crackState = null;
+            for (CrackState state : CrackState.values()) {
+                if (state.asString().equals(crackStateName)) {
+                    crackState = state;
+                }
+            }
+            if (crackState == null || crackState == CrackState.UNCRACKED) {
+                return;
+            }
+            possibleXPSeeds.fromNbt(rootTag.getCompound("XpSeeds"));
+            if (possibleXPSeeds.isEmpty() || (crackState == CrackState.CRACKED && possibleXPSeeds.size() != 1)) {
+                resetCracker();
+                return;
+            }
+            Configs.enchCrackState = crackState;
+
+            ClientWorld world = MinecraftClient.getInstance().world;
+            int[] tablePos = rootTag.getIntArray("TablePos");
+            if (world != null && tablePos.length == 3 && world.getRegistryKey().getValue().toString().equals(rootTag.getString("Dimension"))) {
+                enchantingTablePos = new BlockPos(tablePos[0], tablePos[1], tablePos[2]);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to load enchantment cracker state", e);
+        }
+    }
+
+    public static void saveState() {
+        Path file = getStateFile();
+        if (file == null) {
+            return;
+        }
+
+        try {
+            if (Configs.enchCrackState == CrackState.UNCRACKED) {
+                Files.deleteIfExists(file);
+                return;
+            }
+
+            NbtCompound rootTag = new NbtCompound();
+            rootTag.putString("CrackState", Configs.enchCrackState.asString());
+            rootTag.put("XpSeeds", possibleXPSeeds.toNbt());
+            ClientWorld world = MinecraftClient.getInstance().world;
+            if (enchantingTablePos != null && world != null) {
+                rootTag.putIntArray("TablePos", new int[] {enchantingTablePos.getX(), enchantingTablePos.getY(), enchantingTablePos.getZ()});
+                rootTag.putString("Dimension", world.getRegistryKey().getValue().toString());
+            }
+
+            Path dir = file.getParent();
+            Files.createDirectories(dir);
+            Path newFile = File.createTempFile("enchanting", ".dat", dir.toFile()).toPath();
+            NbtIo.write(rootTag, newFile);
+            Util.backupAndReplace(file, newFile, dir.resolve(file.getFileName() + "_old"));
+        } catch (IOException e) {
+            LOGGER.error("Failed to save enchantment cracker state", e);
+        }
+    }
+
     // ENCHANTMENT MANIPULATION
     /*
      * This section is involved in actually manipulating the enchantments and the XP
      * seed
      */
 
-    public static ManipulateResult manipulateEnchantments(Item item, Predicate<List<EnchantmentLevelEntry>> enchantmentsPredicate, boolean simulate) {
-        ClientPlayerEntity player = MinecraftClient.getInstance().player;
-        assert player != null;
+    /**
+     * Starts searching for the fewest item throws, then the fewest bookshelves, then the lowest slot which give
+     * enchantments matching the predicate. The search runs in the background as a task which shows its progress and can
+     * be stopped with /ctask stop. Once it finishes, the manipulation is started unless simulating, and the callback is
+     * called on the client thread with the result, or {@code null} if nothing was found.
+     *
+     * @return The name of the search task
+     */
+    public static String manipulateEnchantments(ItemAndEnchantmentsPredicate goal, boolean simulate, Consumer<@Nullable ManipulateResult> callback) {
+        ManipulationSearch search = new ManipulationSearch(goal);
+        return TaskManager.addTask("cenchant", new SimpleTask() {
+            @Override
+            public boolean condition() {
+                return !search.result.isDone();
+            }
 
-        ItemStack stack = new ItemStack(item);
-        long seed = PlayerRandCracker.getSeed();
-        // -2: not found; -1: no dummy enchantment needed; >= 0: number of times needed
-        // to throw out item before dummy enchantment
-        int timesNeeded = -2;
-        int bookshelvesNeeded = 0;
-        int slot = 0;
-        List<EnchantmentLevelEntry> enchantments = null;
-        int[] enchantLevels = new int[3];
-        outerLoop:
-        for (int i = Configs.enchCrackState == CrackState.CRACKED ? -1 : 0;
-             i < (Configs.playerCrackState.knowsSeed() ? Configs.getMaxEnchantItemThrows() : 0);
-             i++) {
-            int xpSeed = i == -1 ?
-                    possibleXPSeeds.iterator().next()
-                    : (int) (((seed * PlayerRandCracker.MULTIPLIER + PlayerRandCracker.ADDEND) & PlayerRandCracker.MASK) >>> 16);
-            Random rand = Random.create();
-            for (bookshelvesNeeded = 0; bookshelvesNeeded <= 15; bookshelvesNeeded++) {
-                rand.setSeed(xpSeed);
-                for (slot = 0; slot < 3; slot++) {
-                    int level = EnchantmentHelper.calculateRequiredExperienceLevel(rand, slot, bookshelvesNeeded, stack);
-                    if (level < slot + 1) {
-                        level = 0;
-                    }
-                    enchantLevels[slot] = level;
+            @Override
+            protected void onTick() {
+                ClientCommandHelper.addOverlayMessage(Text.translatable("enchCrack.searching", search.getProgress(), search.getTotal()), 20);
+            }
+
+            @Override
+            public void onCompleted() {
+                if (!search.result.isDone()) {
+                    // stopped by the user
+                    search.cancel();
+                    return;
                 }
-                for (slot = 0; slot < 3; slot++) {
-                    enchantments = getEnchantmentList(rand, xpSeed, stack, slot,
-                            enchantLevels[slot]);
-                    if (enchantmentsPredicate.test(enchantments)) {
-                        timesNeeded = i;
-                        break outerLoop;
-                    }
+
+                ManipulateResult result;
+                try {
+                    result = search.result.join();
+                } catch (CompletionException e) {
+                    LOGGER.error("Enchantment manipulation search failed", e);
+                    result = null;
+                }
+                if (!search.isStillValid()) {
+                    ClientCommandHelper.sendError(Text.translatable("enchCrack.searchOutdated"));
+                    return;
                 }
+                if (result != null && !simulate) {
+                    startManipulation(result);
+                }
+                callback.accept(result);
+            }
+
+            @Override
+            public boolean stopOnWorldUnload(boolean isDisconnect) {
+                search.cancel();
+                return true;
             }
+        });
+    }
 
-            if (i != -1) {
-                for (int j = 0; j < 4; j++) {
-                    seed = (seed * PlayerRandCracker.MULTIPLIER + PlayerRandCracker.ADDEND) & PlayerRandCracker.MASK;
+    /**
+     * Searches throw counts in chunks on the common fork-join pool. Chunks are handed out to the workers in increasing
+     * order, and a worker gives up on its chunk as soon as a cheaper plan has been found elsewhere, so once a plan is
+     * found the search only waits for the cheaper chunks still in progress to rule themselves out.
+     */
+    private static final class ManipulationSearch {
+        private static final int CHUNK_SIZE = 64;
+
+        private final Item item;
+        private final Predicate<List<EnchantmentLevelEntry>> enchantmentsPredicate;
+        private final EnchantmentOutcomeTables.Goal goal;
+        private final long playerSeed;
+        private final int crackedXpSeed;
+        private final int minThrows;
+        private final int total;
+
+        private final AtomicInteger nextChunk = new AtomicInteger();
+        private final AtomicInteger progress = new AtomicInteger();
+        // the cost of the best plan found so far, see getCost
+        private final AtomicInteger bestCost = new AtomicInteger(Integer.MAX_VALUE);
+        private ManipulateResult bestResult;
+        private volatile boolean cancelled;
+        private final CompletableFuture<@Nullable ManipulateResult> result;
+
+        ManipulationSearch(ItemAndEnchantmentsPredicate goal) {
+            this.item = goal.item();
+            this.enchantmentsPredicate = goal.predicate();
+            this.goal = new EnchantmentOutcomeTables.Goal(goal);
+            this.playerSeed = PlayerRandCracker.getSeed();
+            boolean xpSeedCracked = Configs.enchCrackState == CrackState.CRACKED;
+            this.crackedXpSeed = xpSeedCracked ? possibleXPSeeds.getFirst() : 0;
+            // -1 item throws means no dummy enchantment is needed
+            this.minThrows = xpSeedCracked ? -1 : 0;
+            int maxThrows = Configs.playerCrackState.knowsSeed() ? Configs.getMaxEnchantItemThrows() : 0;
+            this.total = Math.max(0, maxThrows - minThrows);
+
+            int numChunks = (total + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            int numWorkers = Math.max(1, Math.min(numChunks, ForkJoinPool.getCommonPoolParallelism()));
+            CompletableFuture<?>[] workers = new CompletableFuture[numWorkers];
+            for (int i = 0; i < numWorkers; i++) {
+                workers[i] = CompletableFuture.runAsync(this::runWorker);
+            }
+            this.result = CompletableFuture.allOf(workers).thenApply(v -> cancelled ? null : getBestResult());
+        }
+
+        private static int getCost(int itemThrows, int bookshelves, int slot) {
+            return ((itemThrows + 1) * 16 + bookshelves) * 3 + slot;
+        }
+
+        private void runWorker() {
+            ItemStack stack = new ItemStack(item);
+            Random rand = new LcgRandom(0);
+            int[] enchantLevels = new int[3];
+            while (!cancelled) {
+                int start = nextChunk.getAndIncrement() * CHUNK_SIZE;
+                if (start >= total || getCost(minThrows + start, 0, 0) >= bestCost.get()) {
+                    return;
                 }
+                int end = Math.min(total, start + CHUNK_SIZE);
+                searchChunk(stack, rand, enchantLevels, minThrows + start, minThrows + end);
+                progress.addAndGet(end - start);
             }
         }
-        if (timesNeeded == -2) {
-            return null;
+
+        private void searchChunk(ItemStack stack, Random rand, int[] enchantLevels, int startThrows, int endThrows) {
+            long seed = PlayerRandCracker.advanceThrows(playerSeed, Math.max(0, startThrows));
+            for (int itemThrows = startThrows; itemThrows < endThrows; itemThrows++) {
+                if (cancelled || getCost(itemThrows, 0, 0) >= bestCost.get()) {
+                    return;
+                }
+                int xpSeed = itemThrows == -1 ? crackedXpSeed
+                        : (int) (((seed * PlayerRandCracker.MULTIPLIER + PlayerRandCracker.ADDEND) & PlayerRandCracker.MASK) >>> 16);
+                for (int bookshelves = 0; bookshelves <= 15; bookshelves++) {
+                    rand.setSeed(xpSeed);
+                    for (int slot = 0; slot < 3; slot++) {
+                        int level = EnchantmentHelper.calculateRequiredExperienceLevel(rand, slot, bookshelves, stack);
+                        if (level < slot + 1) {
+                            level = 0;
+                        }
+                        enchantLevels[slot] = level;
+                    }
+                    for (int slot = 0; slot < 3; slot++) {
+                        if (!goal.canReach(stack, enchantLevels[slot])) {
+                            continue;
+                        }
+                        List<EnchantmentLevelEntry> enchantments = getEnchantmentList(rand, xpSeed, stack, slot, enchantLevels[slot], goal);
+                        if (enchantments != null && enchantmentsPredicate.test(enchantments)) {
+                            offerResult(new ManipulateResult(itemThrows, bookshelves, slot, enchantments), getCost(itemThrows, bookshelves, slot));
+                            return;
+                        }
+                    }
+                }
+                if (itemThrows != -1) {
+                    seed = PlayerRandCracker.advanceThrows(seed, 1);
+                }
+            }
+        }
+
+        private synchronized void offerResult(ManipulateResult result, int cost) {
+            if (cost < bestCost.get()) {
+                bestResult = result;
+                bestCost.set(cost);
+            }
+        }
+
+        private synchronized ManipulateResult getBestResult() {
+            return bestResult;
+        }
+
+        int getProgress() {
+            return progress.get();
         }
 
-        if (simulate) {
-            return new ManipulateResult(timesNeeded, bookshelvesNeeded, slot, enchantments);
+        int getTotal() {
+            return total;
         }
 
+        void cancel() {
+            cancelled = true;
+        }
+
+        /**
+         * Whether the player RNG is still where it was when the search started
+         */
+        boolean isStillValid() {
+            if (minThrows == -1 && (Configs.enchCrackState != CrackState.CRACKED || possibleXPSeeds.getFirst() != crackedXpSeed)) {
+                return false;
+            }
+            boolean searchedThrows = minThrows + total > 0;
+            return !searchedThrows || (Configs.playerCrackState.knowsSeed() && PlayerRandCracker.getSeed() == playerSeed);
+        }
+    }
+
+    private static void startManipulation(ManipulateResult result) {
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        assert player != null;
+
+        int timesNeeded = result.itemThrows();
         LongTaskList taskList = new LongTaskList();
         if (timesNeeded != -1) {
             if (timesNeeded != 0) {
@@ -372,34 +663,14 @@ public class EnchantmentCracker {
                 // sync rotation to server before we throw any items
                 player.networkHandler.sendPacket(new PlayerMoveC2SPacket.LookAndOnGround(player.getYaw(), 90, player.isOnGround()));
                 Configs.playerCrackState = PlayerRandCracker.CrackState.MANIPULATING_ENCHANTMENTS;
-            }
-            for (int i = 0; i < timesNeeded; i++) {
-                // throw the item once it's in the inventory
-                taskList.addTask(new SimpleTask() {
+                taskList.addTask(new ItemThrowTask(timesNeeded) {
                     @Override
-                    public boolean condition() {
+                    protected boolean canContinue() {
                         if (Configs.playerCrackState != PlayerRandCracker.CrackState.MANIPULATING_ENCHANTMENTS) {
                             taskList._break();
                             return false;
                         }
-
-                        Slot slot = PlayerRandCracker.getBestItemThrowSlot(MinecraftClient.getInstance().player.currentScreenHandler.slots);
-                        //noinspection RedundantIfStatement
-                        if (slot == null) {
-                            return true; // keep waiting
-                        } else {
-                            return false; // ready to throw an item
-                        }
-                    }
-
-                    @Override
-                    protected void onTick() {
-                    }
-
-                    @Override
-                    public void onCompleted() {
-                        PlayerRandCracker.throwItem();
-                        scheduleDelay();
+                        return true;
                     }
                 });
             }
@@ -427,8 +698,6 @@ public class EnchantmentCracker {
                 }
             });
         }
-        final int bookshelvesNeeded_f = bookshelvesNeeded;
-        final int slot_f = slot;
         doneEnchantment = true;
         taskList.addTask(new OneTickTask() {
             @Override
@@ -436,15 +705,13 @@ public class EnchantmentCracker {
                 if (Configs.enchCrackState == CrackState.CRACKED && doneEnchantment) {
                     ChatHud chatHud = MinecraftClient.getInstance().inGameHud.getChatHud();
                     chatHud.addMessage(Text.translatable("enchCrack.insn.ready").formatted(Formatting.BOLD));
-                    chatHud.addMessage(Text.translatable("enchCrack.insn.bookshelves", bookshelvesNeeded_f));
-                    chatHud.addMessage(Text.translatable("enchCrack.insn.slot", slot_f + 1));
+                    chatHud.addMessage(Text.translatable("enchCrack.insn.bookshelves", result.bookshelves()));
+                    chatHud.addMessage(Text.translatable("enchCrack.insn.slot", result.slot() + 1));
                 }
             }
         });
 
         TaskManager.addTask("enchantmentCracker", taskList);
-
-        return new ManipulateResult(timesNeeded, bookshelvesNeeded, slot, enchantments);
     }
 
     // MISCELLANEOUS HELPER METHODS & ENCHANTING SIMULATION
@@ -483,8 +750,20 @@ public class EnchantmentCracker {
 
     private static List<EnchantmentLevelEntry> getEnchantmentList(Random rand, int xpSeed, ItemStack stack, int enchantSlot,
                                                                   int level) {
+        return getEnchantmentList(rand, xpSeed, stack, enchantSlot, level, null);
+    }
+
+    /**
+     * Returns {@code null} if the enchantments can't match the goal
+     */
+    @Nullable
+    private static List<EnchantmentLevelEntry> getEnchantmentList(Random rand, int xpSeed, ItemStack stack, int enchantSlot,
+                                                                  int level, @Nullable EnchantmentOutcomeTables.Goal goal) {
         rand.setSeed(xpSeed + enchantSlot);
-        List<EnchantmentLevelEntry> list = EnchantmentHelper.generateEnchantments(rand, stack, level, false);
+        List<EnchantmentLevelEntry> list = EnchantmentOutcomeTables.generateEnchantments(rand, stack, level, goal);
+        if (list == null) {
+            return null;
+        }
 
         if (stack.getItem() == Items.BOOK && list.size() > 1) {
             list.remove(rand.nextInt(list.size()));
@@ -516,8 +795,8 @@ public class EnchantmentCracker {
             }
         } else {
             // return the enchantments using our cracked seed
-            Random rand = Random.create();
-            int xpSeed = possibleXPSeeds.iterator().next();
+            Random rand = new LcgRandom(0);
+            int xpSeed = possibleXPSeeds.getFirst();
             ItemStack enchantingStack = enchContainer.getSlot(0).getStack();
             int enchantLevels = enchContainer.enchantmentPower[slot];
             return getEnchantmentList(rand, xpSeed, enchantingStack, slot, enchantLevels);
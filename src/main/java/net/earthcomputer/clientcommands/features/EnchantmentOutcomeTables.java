@@ -0,0 +1,320 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.earthcomputer.clientcommands.MultiVersionCompat;
+import net.earthcomputer.clientcommands.command.arguments.ItemAndEnchantmentsPredicateArgumentType;
+import net.minecraft.enchantment.EnchantmentHelper;
+import net.minecraft.enchantment.EnchantmentLevelEntry;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.util.Util;
+import net.minecraft.util.collection.Weighting;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.random.Random;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A faster version of {@link EnchantmentHelper#generateEnchantments} for the enchanting table. The enchantments which
+ * can be picked for each item and modified enchantment power are worked out once, along with their weights and which
+ * of them conflict with each other, so generating the enchantments for an XP seed only takes the RNG draws and a few
+ * array lookups. Safe to use from several threads.
+ */
+final class EnchantmentOutcomeTables {
+    // modified enchantment powers above this aren't reached from an enchanting table, and aren't cached
+    private static final int MAX_CACHED_POWER = 127;
+
+    private static final Map<Item, Table[]> tables = new ConcurrentHashMap<>();
+    private static volatile int tablesProtocolVersion = -1;
+
+    private EnchantmentOutcomeTables() {
+    }
+
+    /**
+     * Whether the server uses the 1.14 to 1.14.2 algorithm, which MixinEnchantmentHelper emulates inside
+     * {@link EnchantmentHelper#generateEnchantments}, so that has to be called instead of using the tables
+     */
+    private static boolean mustDelegateToEnchantmentHelper(int protocolVersion) {
+        return protocolVersion >= MultiVersionCompat.V1_14 && protocolVersion <= MultiVersionCompat.V1_14_2;
+    }
+
+    /**
+     * Generates the enchantments, or returns {@code null} as soon as the draws so far rule out the goal
+     */
+    // TODO: update-sensitive: EnchantmentHelper.generateEnchantments
+    @Nullable
+    static List<EnchantmentLevelEntry> generateEnchantments(Random rand, ItemStack stack, int level, @Nullable Goal goal) {
+        int protocolVersion = MultiVersionCompat.INSTANCE.getProtocolVersion();
+        if (mustDelegateToEnchantmentHelper(protocolVersion)) {
+            return EnchantmentHelper.generateEnchantments(rand, stack, level, false);
+        }
+
+        List<EnchantmentLevelEntry> enchantments = new ArrayList<>(4);
+        Item item = stack.getItem();
+        int enchantability = item.getEnchantability();
+        if (enchantability <= 0) {
+            return enchantments;
+        }
+
+        level += 1 + rand.nextInt(enchantability / 4 + 1) + rand.nextInt(enchantability / 4 + 1);
+        float change = (rand.nextFloat() + rand.nextFloat() - 1) * 0.15f;
+        level = MathHelper.clamp(Math.round(level + level * change), 1, Integer.MAX_VALUE);
+
+        Table table = getTable(stack, level, protocolVersion);
+        if (table == null) {
+            generateFromPossibleEntries(rand, stack, level, enchantments);
+            return enchantments;
+        }
+        if (table.entries.length == 0) {
+            return enchantments;
+        }
+
+        GoalMasks goalMasks = goal == null ? GoalMasks.NONE : goal.getMasks(table, level);
+        if (!goalMasks.possible) {
+            return null;
+        }
+
+        long available = table.all;
+        long pickedMask = 0;
+        int picked = table.pick(rand, available);
+        enchantments.add(table.entries[picked]);
+        while (true) {
+            pickedMask |= 1L << picked;
+            if ((pickedMask & goalMasks.forbidden) != 0) {
+                return null;
+            }
+            if (rand.nextInt(50) > level) {
+                break;
+            }
+            available &= ~table.conflicts[picked];
+            if ((goalMasks.required & ~pickedMask & ~available) != 0) {
+                // a required enchantment can no longer be picked
+                return null;
+            }
+            if (available == 0) {
+                break;
+            }
+            picked = table.pick(rand, available);
+            enchantments.add(table.entries[picked]);
+            level /= 2;
+        }
+
+        return enchantments;
+    }
+
+    /**
+     * The rest of the vanilla algorithm, for when there are too many enchantments for a table
+     */
+    private static void generateFromPossibleEntries(Random rand, ItemStack stack, int level, List<EnchantmentLevelEntry> enchantments) {
+        List<EnchantmentLevelEntry> possibleEntries = EnchantmentHelper.getPossibleEntries(level, stack, false);
+        if (possibleEntries.isEmpty()) {
+            return;
+        }
+        Weighting.getRandom(rand, possibleEntries).ifPresent(enchantments::add);
+        while (rand.nextInt(50) <= level) {
+            if (!enchantments.isEmpty()) {
+                EnchantmentHelper.removeConflicts(possibleEntries, Util.getLast(enchantments));
+            }
+            if (possibleEntries.isEmpty()) {
+                break;
+            }
+            Weighting.getRandom(rand, possibleEntries).ifPresent(enchantments::add);
+            level /= 2;
+        }
+    }
+
+    private static Table getTable(ItemStack stack, int power, int protocolVersion) {
+        if (power > MAX_CACHED_POWER) {
+            return Table.create(stack, power);
+        }
+        if (protocolVersion != tablesProtocolVersion) {
+            tables.clear();
+            tablesProtocolVersion = protocolVersion;
+        }
+
+        Table[] tablesByPower = tables.computeIfAbsent(stack.getItem(), k -> new Table[MAX_CACHED_POWER + 1]);
+        Table table = tablesByPower[power];
+        if (table == null) {
+            // if two threads get here at once they compute the same table, so it doesn't matter which one wins
+            table = Table.create(stack, power);
+            tablesByPower[power] = table;
+        }
+        return table;
+    }
+
+    /**
+     * An enchantment manipulation goal, compiled against the tables as they are needed. Enchanted books have a random
+     * enchantment removed after they are generated, so for books a forbidden enchantment being drawn doesn't rule out
+     * the goal, only a required enchantment becoming impossible does.
+     */
+    static final class Goal {
+        private final Item item;
+        private final List<EnchantmentLevelEntry> with;
+        private final List<EnchantmentLevelEntry> without;
+        private final boolean exact;
+        private final GoalMasks[] masksByPower = new GoalMasks[MAX_CACHED_POWER + 1];
+        // indexed by enchantment level, 0 if unknown, 1 if the goal can be reached and 2 if not
+        private final byte[] reachableByLevel = new byte[MAX_CACHED_POWER + 1];
+
+        Goal(ItemAndEnchantmentsPredicateArgumentType.ItemAndEnchantmentsPredicate predicate) {
+            this.item = predicate.item();
+            this.with = predicate.with();
+            this.without = predicate.without();
+            this.exact = predicate.exact();
+        }
+
+        private GoalMasks getMasks(Table table, int power) {
+            if (power > MAX_CACHED_POWER) {
+                return computeMasks(table);
+            }
+            GoalMasks masks = masksByPower[power];
+            if (masks == null || masks.table != table) {
+                masks = computeMasks(table);
+                masksByPower[power] = masks;
+            }
+            return masks;
+        }
+
+        private GoalMasks computeMasks(Table table) {
+            long required = 0;
+            for (EnchantmentLevelEntry ench : with) {
+                int index = table.indexOf(ench);
+                if (index == -1) {
+                    return new GoalMasks(table, false, 0, 0);
+                }
+                required |= 1L << index;
+            }
+
+            long forbidden = 0;
+            if (item != Items.BOOK) {
+                if (exact) {
+                    forbidden = table.all & ~required;
+                } else {
+                    for (EnchantmentLevelEntry ench : without) {
+                        int index = table.indexOf(ench);
+                        if (index != -1) {
+                            forbidden |= 1L << index;
+                        }
+                    }
+                }
+            }
+            return new GoalMasks(table, true, required, forbidden);
+        }
+
+        /**
+         * Whether an enchanting table slot with this level could give the goal for some XP seed. Checks every
+         * enchantment power the random enchantability bonus could lead to, without drawing anything.
+         */
+        boolean canReach(ItemStack stack, int level) {
+            int protocolVersion = MultiVersionCompat.INSTANCE.getProtocolVersion();
+            if (mustDelegateToEnchantmentHelper(protocolVersion) || level < 0 || level > MAX_CACHED_POWER) {
+                return true;
+            }
+            byte reachable = reachableByLevel[level];
+            if (reachable == 0) {
+                reachable = computeReachable(stack, level, protocolVersion) ? (byte) 1 : (byte) 2;
+                reachableByLevel[level] = reachable;
+            }
+            return reachable == 1;
+        }
+
+        private boolean computeReachable(ItemStack stack, int level, int protocolVersion) {
+            int enchantability = stack.getItem().getEnchantability();
+            if (enchantability <= 0) {
+                return with.isEmpty();
+            }
+            int minPower = level + 1;
+            int maxPower = level + 1 + 2 * (enchantability / 4);
+            int lowest = Math.max(1, (int) Math.floor(minPower * 0.85));
+            int highest = (int) Math.ceil(maxPower * 1.15);
+            if (highest > MAX_CACHED_POWER) {
+                return true;
+            }
+            for (int power = lowest; power <= highest; power++) {
+                Table table = getTable(stack, power, protocolVersion);
+                if (table == null || getMasks(table, power).possible) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private record GoalMasks(@Nullable Table table, boolean possible, long required, long forbidden) {
+        static final GoalMasks NONE = new GoalMasks(null, true, 0, 0);
+    }
+
+    /**
+     * The enchantments which can be picked at one enchantment power, in the order of the registry
+     */
+    private static final class Table {
+        final EnchantmentLevelEntry[] entries;
+        final int[] weights;
+        // bit j of conflicts[i] is set if picking entry i removes entry j, including i itself
+        final long[] conflicts;
+        final long all;
+
+        private Table(EnchantmentLevelEntry[] entries, int[] weights, long[] conflicts) {
+            this.entries = entries;
+            this.weights = weights;
+            this.conflicts = conflicts;
+            this.all = entries.length == Long.SIZE ? -1L : (1L << entries.length) - 1;
+        }
+
+        /**
+         * Returns {@code null} if there are too many enchantments to fit in the bitmasks
+         */
+        static Table create(ItemStack stack, int power) {
+            List<EnchantmentLevelEntry> possibleEntries = EnchantmentHelper.getPossibleEntries(power, stack, false);
+            int size = possibleEntries.size();
+            if (size > Long.SIZE) {
+                return null;
+            }
+
+            EnchantmentLevelEntry[] entries = possibleEntries.toArray(new EnchantmentLevelEntry[0]);
+            int[] weights = new int[size];
+            long[] conflicts = new long[size];
+            for (int i = 0; i < size; i++) {
+                weights[i] = entries[i].getWeight().getValue();
+                for (int j = 0; j < size; j++) {
+                    if (!entries[i].enchantment.canCombine(entries[j].enchantment)) {
+                        conflicts[i] |= 1L << j;
+                    }
+                }
+            }
+            return new Table(entries, weights, conflicts);
+        }
+
+        /**
+         * The index of the entry for the same enchantment, if it has the same level or the level is -1
+         */
+        int indexOf(EnchantmentLevelEntry ench) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].enchantment == ench.enchantment) {
+                    return ench.level == -1 || ench.level == entries[i].level ? i : -1;
+                }
+            }
+            return -1;
+        }
+
+        // same as Weighting.getRandom over the available entries
+        int pick(Random rand, long available) {
+            int totalWeight = 0;
+            for (long remaining = available; remaining != 0; remaining &= remaining - 1) {
+                totalWeight += weights[Long.numberOfTrailingZeros(remaining)];
+            }
+            int weight = rand.nextInt(totalWeight);
+            for (long remaining = available; ; remaining &= remaining - 1) {
+                int index = Long.numberOfTrailingZeros(remaining);
+                weight -= weights[index];
+                if (weight < 0) {
+                    return index;
+                }
+            }
+        }
+    }
+}
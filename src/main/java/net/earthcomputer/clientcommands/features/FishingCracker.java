@@ -1,5 +1,7 @@
 package net.earthcomputer.clientcommands.features;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.mojang.logging.LogUtils;
 import com.seedfinding.mcfeature.loot.*;
 import com.seedfinding.mcfeature.loot.condition.BiomeCondition;
 import com.seedfinding.mcfeature.loot.condition.LootCondition;
@@ -7,11 +9,14 @@ import com.seedfinding.mcfeature.loot.condition.OpenWaterCondition;
 import com.seedfinding.mcfeature.loot.entry.ItemEntry;
 import com.seedfinding.mcfeature.loot.entry.LootEntry;
 import com.seedfinding.mcfeature.loot.entry.TableEntry;
+import it.unimi.dsi.fastutil.longs.Long2BooleanMap;
+import it.unimi.dsi.fastutil.longs.Long2BooleanOpenHashMap;
 import net.earthcomputer.clientcommands.Configs;
+import net.earthcomputer.clientcommands.PrecisionTimer;
+import net.earthcomputer.clientcommands.ServerTickClock;
 import net.earthcomputer.clientcommands.command.ClientCommandHelper;
 import net.earthcomputer.clientcommands.command.PingCommand;
 import net.earthcomputer.clientcommands.command.arguments.ClientItemPredicateArgumentType;
-import net.earthcomputer.clientcommands.mixin.CheckedRandomAccessor;
 import net.earthcomputer.clientcommands.mixin.ProjectileEntityAccessor;
 import net.earthcomputer.clientcommands.render.RenderQueue;
 import net.earthcomputer.clientcommands.task.LongTask;
@@ -19,20 +24,24 @@ import net.earthcomputer.clientcommands.task.TaskManager;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
 import net.minecraft.block.Blocks;
+import net.minecraft.block.ShapeContext;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.client.network.ClientPlayerInteractionManager;
+import net.minecraft.client.network.ServerInfo;
 import net.minecraft.enchantment.EnchantmentHelper;
-import net.minecraft.entity.Entity;
+import net.minecraft.enchantment.EnchantmentLevelEntry;
 import net.minecraft.entity.EntityDimensions;
 import net.minecraft.entity.EntityType;
 import net.minecraft.entity.projectile.FishingBobberEntity;
-import net.minecraft.entity.projectile.ProjectileUtil;
 import net.minecraft.fluid.Fluid;
 import net.minecraft.fluid.FluidState;
+import net.minecraft.item.EnchantedBookItem;
+import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
 import net.minecraft.network.packet.c2s.play.PlayerInteractItemC2SPacket;
 import net.minecraft.registry.tag.BlockTags;
 import net.minecraft.registry.tag.FluidTags;
@@ -47,23 +56,27 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.Box;
 import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.Vec3d;
-import net.minecraft.util.math.random.Random;
 import net.minecraft.util.shape.VoxelShape;
 import net.minecraft.util.shape.VoxelShapes;
+import net.minecraft.world.RaycastContext;
 import net.minecraft.world.World;
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
 
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 public class FishingCracker {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
     // goals
-    public static final List<ClientItemPredicateArgumentType.ClientItemPredicate> goals = new ArrayList<>();
+    private static final List<ClientItemPredicateArgumentType.ClientItemPredicate> goals = new ArrayList<>();
+    private static FishingGoalMatcher goalMatcher = FishingGoalMatcher.EMPTY;
     private static boolean hasWarnedMultipleEnchants = false;
 
     // loot state
@@ -74,6 +87,7 @@ public class FishingCracker {
     private static ItemStack tool;
     private static Vec3d bobberDestPos;
     private static int bobberNumTicks;
+    private static int numOpenWaterViolationBoxes;
 
     // rethrow bobber
     public static final int RETHROW_COOLDOWN = 20;
@@ -83,11 +97,18 @@ public class FishingCracker {
     private static long bobberStartTime;
     private static int totalTicksToWait;
     private static int estimatedTicksElapsed;
-    private static final long[] timeSyncTimes = new long[5];
     private static int serverMspt = 50;
     private static volatile int averageTimeToEndOfTick = 0;
-    private static volatile int magicMillisecondsCorrection = -100;
-    private static final ScheduledExecutorService DELAY_EXECUTOR = Executors.newSingleThreadScheduledExecutor();
+    private static volatile int magicMillisecondsCorrection = FishingTimingModel.DEFAULT_CORRECTION;
+    private static FishingTimingModel timingModel = FishingTimingModel.load(null, expectedCatches.length);
+    private static final PrecisionTimer REEL_IN_TIMER = new PrecisionTimer("clientcommands fishing reel in timer");
+
+    // simulation
+    private static final ExecutorService SIMULATION_EXECUTOR = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setNameFormat("clientcommands fishing simulation").setDaemon(true).build());
+    @Nullable
+    private static CompletableFuture<SimulationResult> simulationFuture;
+    private static final FishingSimulationProfiler SIMULATION_PROFILER = new FishingSimulationProfiler();
 
     // state
     public static volatile State state = State.NOT_MANIPULATING;
@@ -99,7 +120,59 @@ public class FishingCracker {
     // region LOOT SIMULATION
 
     private static boolean isMatchingLoot(ItemStack loot, ClientItemPredicateArgumentType.ClientItemPredicate goal) {
-        return goal.getPossibleItems().contains(loot.getItem());
+        Collection<Item> possibleItems = goal.getPossibleItems();
+        // books in the loot table only become enchanted books once their loot functions have been applied
+        return possibleItems.contains(loot.getItem()) || (loot.isOf(Items.BOOK) && possibleItems.contains(Items.ENCHANTED_BOOK));
+    }
+
+    /**
+     * Returns the probability that a single catch from the given table contains loot matching any of the goals,
+     * assuming that each pool is rolled once, which is the case for all fishing loot tables.
+     */
+    private static double getMatchingLootProbability(LootTable table, LootContext context, int luck, List<ClientItemPredicateArgumentType.ClientItemPredicate> goals) {
+        if (!checkConditions(table, context, condition -> {})) {
+            return 0;
+        }
+
+        double missProbability = 1;
+        for (LootPool lootPool : table.lootPools) {
+            missProbability *= 1 - getMatchingLootProbabilityForPool(lootPool, context, luck, goals);
+        }
+
+        return 1 - missProbability;
+    }
+
+    private static double getMatchingLootProbabilityForPool(LootPool pool, LootContext context, int luck, List<ClientItemPredicateArgumentType.ClientItemPredicate> goals) {
+        if (!checkConditions(pool, context, condition -> {})) {
+            return 0;
+        }
+
+        int totalWeight = 0;
+        double matchingWeight = 0;
+        for (LootEntry lootEntry : pool.lootEntries) {
+            if (!checkConditions(lootEntry, context, condition -> {})) {
+                continue;
+            }
+            // same as LootPoolEntry.getWeight in vanilla
+            int weight = Math.max(MathHelper.floor(lootEntry.weight + lootEntry.quality * (float) luck), 0);
+            if (weight > 0) {
+                totalWeight += weight;
+                matchingWeight += weight * getMatchingLootProbabilityForEntry(lootEntry, context, luck, goals);
+            }
+        }
+
+        return totalWeight == 0 ? 0 : matchingWeight / totalWeight;
+    }
+
+    private static double getMatchingLootProbabilityForEntry(LootEntry entry, LootContext context, int luck, List<ClientItemPredicateArgumentType.ClientItemPredicate> goals) {
+        if (entry instanceof ItemEntry itemEntry) {
+            ItemStack loot = SeedfindingUtil.fromSeedfindingItem(itemEntry.item);
+            return goals.stream().anyMatch(goal -> isMatchingLoot(loot, goal)) ? 1 : 0;
+        } else if (entry instanceof TableEntry tableEntry) {
+            return getMatchingLootProbability(tableEntry.table.get().apply(SeedfindingUtil.getMCVersion()), context, luck, goals);
+        }
+
+        return 0;
     }
 
     private static List<com.seedfinding.mcfeature.loot.item.ItemStack> generateAllMatchingLoot(LootTable table, @Nullable LootContext context, ClientItemPredicateArgumentType.ClientItemPredicate goal, Consumer<LootCondition> failedConditions) {
@@ -164,39 +237,69 @@ public class FishingCracker {
 
     // endregion
 
-    // region SEED CRACKING
+    // region SIMULATION HORIZON
+
+    private static final int MAX_SIMULATION_TICKS = 10000;
+    // the number of bite windows of a single bobber which are searched for a goal before rethrowing
+    private static final int MAX_BITE_WINDOWS = 8;
+    // the z-score of the percentile of bite times that the simulation horizon covers (99.9%)
+    private static final double HORIZON_CONFIDENCE_Z_SCORE = 3.09;
 
     /**
-     * Returns the internal seed of the Random the instant before it generates the UUID via {@link MathHelper#randomUuid(Random)}
+     * Plans how many ticks the simulation needs to run for after the bobber starts bobbing. The horizon covers the
+     * given number of bite windows with high confidence, using the worst case wait and travel times for the lure
+     * level and the tick rate of the fishing countdowns at the bobber's position. It is cut short where rethrowing
+     * is expected to reach a goal sooner than waiting for a later bite window of this bobber would.
+     *
+     * @param castTicks The number of ticks it took the bobber to start bobbing after being cast
      */
-    private static OptionalLong getSeed(UUID uuid) {
-        long uuidLower = uuid.getLeastSignificantBits();
-
-        long hi = 0;
-        do {
-            long nextLongOutput = hi | (uuidLower & ~(3L << 62));
-            long upperBits = nextLongOutput >>> 32;
-            long lowerBits = nextLongOutput & ((1L << 32) - 1);
-
-            long a = (24667315L * upperBits + 18218081L * lowerBits + 67552711L) >> 32;
-            long b = (-4824621L * upperBits + 7847617L * lowerBits + 7847617L) >> 32;
-            long seed = 7847617L * a - 18218081L * b;
-
-            if ((seed >>> 16 << 32) + (int)(((seed * 0x5deece66dL + 0xbL) & ((1L << 48) - 1)) >>> 16) == nextLongOutput) {
-                // advance by -3
-                seed = (seed * 0x13A1F16F099DL + 0x95756C5D2097L) & ((1L << 48) - 1);
-                Random rand = Random.create(seed ^ 0x5deece66dL);
-                if (MathHelper.randomUuid(rand).equals(uuid)) {
-                    return OptionalLong.of(seed);
-                }
-            }
-            
-            hi += 1L << 62;
-        } while (hi != 0);
+    private static Horizon planHorizon(double catchProbability, int lureLevel, boolean skyVisible, boolean raining, int biteWindows, int castTicks) {
+        if (catchProbability <= 0) {
+            return new Horizon(0, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, 0);
+        }
 
-        return OptionalLong.empty();
+        // see tickFishingLogic: the countdowns decrease by 1, plus 1 with 25% chance in rain, minus 1 with 50% chance without sky
+        double rainChance = raining ? 0.25 : 0;
+        double noSkyChance = skyVisible ? 0 : 0.5;
+        double meanDecrement = 1 + rainChance - noSkyChance;
+        double decrementVariance = rainChance * (1 - rainChance) + noSkyChance * (1 - noSkyChance);
+
+        // worst case wait countdown plus worst case fish travel countdown
+        int windowCountdown = Math.max(0, 599 - lureLevel * 20 * 5) + 79;
+        // the hook countdown always decreases by 1, and each stage takes an extra tick to start
+        int windowHookTicks = 40 + 3;
+        double allWindowsTicks = getCountdownTicks(biteWindows * windowCountdown, meanDecrement, decrementVariance) + biteWindows * windowHookTicks;
+        double firstWindowTicks = getCountdownTicks(windowCountdown, meanDecrement, decrementVariance) + windowHookTicks;
+
+        // a rethrown bobber only gets its first bite window searched, which holds a goal with this probability
+        double meanHookTicks = 29.5;
+        double windowSuccessProbability = 1 - Math.pow(1 - catchProbability, meanHookTicks);
+        double meanCountdown = Math.max(0, 349.5 - lureLevel * 20 * 5) + 49.5;
+        double ticksPerCast = RETHROW_COOLDOWN + castTicks + meanCountdown / meanDecrement + meanHookTicks + 3;
+        double expectedRethrowTicks = ticksPerCast / windowSuccessProbability;
+
+        // the first window is always searched in full, like a rethrown bobber's would be, so the rethrow cap only
+        // limits how many later windows are searched
+        double searchedTicks = Math.max(firstWindowTicks, Math.min(allWindowsTicks, expectedRethrowTicks - castTicks));
+        int maxTicks = (int) Math.min(MAX_SIMULATION_TICKS, Math.ceil(searchedTicks));
+        return new Horizon(catchProbability, 1 / catchProbability, expectedRethrowTicks, maxTicks);
+    }
+
+    /**
+     * The number of ticks a countdown of the given length takes, at the given confidence
+     */
+    private static double getCountdownTicks(int countdown, double meanDecrement, double decrementVariance) {
+        return countdown / meanDecrement + HORIZON_CONFIDENCE_Z_SCORE * Math.sqrt(countdown * decrementVariance / (meanDecrement * meanDecrement * meanDecrement));
     }
 
+    /**
+     * @param catchProbability The probability that a single catch matches any of the goals
+     * @param expectedCatches The expected number of catches until one matches a goal
+     * @param expectedRethrowTicks The expected number of ticks until a goal is caught by rethrowing now
+     * @param maxTicks The number of ticks to simulate after the bobber starts bobbing
+     */
+    private record Horizon(double catchProbability, double expectedCatches, double expectedRethrowTicks, int maxTicks) {}
+
     // endregion
 
     // region UTILITY
@@ -230,11 +333,57 @@ public class FishingCracker {
         return false;
     }
 
+    public static List<ClientItemPredicateArgumentType.ClientItemPredicate> getGoals() {
+        return Collections.unmodifiableList(goals);
+    }
+
+    public static void addGoal(ClientItemPredicateArgumentType.ClientItemPredicate goal) {
+        goals.add(goal);
+        goalMatcher = FishingGoalMatcher.compile(goals);
+    }
+
+    public static ClientItemPredicateArgumentType.ClientItemPredicate removeGoal(int index) {
+        ClientItemPredicateArgumentType.ClientItemPredicate goal = goals.remove(index);
+        goalMatcher = FishingGoalMatcher.compile(goals);
+        return goal;
+    }
+
     public static boolean canManipulateFishing() {
         return Configs.getFishingManipulation().isEnabled() && !goals.isEmpty();
     }
 
+    public static FishingTimingModel getTimingModel() {
+        loadTimingModel();
+        return timingModel;
+    }
+
+    public static PrecisionTimer getReelInTimer() {
+        return REEL_IN_TIMER;
+    }
+
+    public static FishingSimulationProfiler getSimulationProfiler() {
+        return SIMULATION_PROFILER;
+    }
+
+    /**
+     * Called when leaving the server, rather than after every catch
+     */
+    public static void saveTimingModel() {
+        timingModel.save();
+    }
+
+    private static void loadTimingModel() {
+        ServerInfo serverInfo = MinecraftClient.getInstance().getCurrentServerEntry();
+        String serverAddress = serverInfo == null ? null : serverInfo.address;
+        if (!Objects.equals(serverAddress, timingModel.getServerAddress())) {
+            timingModel.save();
+            timingModel = FishingTimingModel.load(serverAddress, expectedCatches.length);
+            magicMillisecondsCorrection = timingModel.getCorrection();
+        }
+    }
+
     private static void handleFishingRodThrow(ItemStack stack) {
+        loadTimingModel();
         long time = System.nanoTime();
         synchronized (STATE_LOCK) {
             throwTime = time;
@@ -248,6 +397,11 @@ public class FishingCracker {
         synchronized (STATE_LOCK) {
             state = State.NOT_MANIPULATING;
 
+            if (simulationFuture != null) {
+                simulationFuture.cancel(false);
+                simulationFuture = null;
+            }
+
             if (canManipulateFishing() && Configs.getFishingManipulation() == Configs.FishingManipulation.AFK) {
                 state = State.WAITING_FOR_RETRHOW;
                 TaskManager.addTask("cfishRethrow", new LongTask() {
@@ -298,10 +452,10 @@ public class FishingCracker {
             if (state != State.WAITING_FOR_FIRST_BOBBER_TICK) {
                 return;
             }
-            state = State.WAITING_FOR_FISH;
+            state = State.SIMULATING;
         }
 
-        OptionalLong optionalSeed = getSeed(fishingBobberUUID);
+        OptionalLong optionalSeed = UuidRandCracker.getSeed(fishingBobberUUID);
         if (optionalSeed.isEmpty()) {
             Text error = Text.translatable("commands.cfish.error.crackFailed").styled(style -> style.withColor(Formatting.RED));
             ClientCommandHelper.addOverlayMessage(error, 100);
@@ -309,47 +463,123 @@ public class FishingCracker {
             return;
         }
 
-        record ErrorEntry(int tick, boolean isBox) {}
         // clear last error
         for (int tick = 0; tick <= bobberNumTicks; tick++) {
             RenderQueue.remove(RenderQueue.Layer.ON_TOP, new ErrorEntry(tick, false));
             RenderQueue.remove(RenderQueue.Layer.ON_TOP, new ErrorEntry(tick, true));
         }
         bobberNumTicks = 0;
+        for (int i = 0; i < numOpenWaterViolationBoxes; i++) {
+            RenderQueue.remove(RenderQueue.Layer.ON_TOP, new OpenWaterViolationEntry(i));
+        }
+        numOpenWaterViolationBoxes = 0;
 
         long seed = optionalSeed.getAsLong();
-        SimulatedFishingBobber fishingBobber = new SimulatedFishingBobber(seed, tool, pos, velocity);
+        long captureStart = System.nanoTime();
+        World clientWorld = Objects.requireNonNull(MinecraftClient.getInstance().world);
+        FishingBobberEntity fakeEntity = new FishingBobberEntity(Objects.requireNonNull(MinecraftClient.getInstance().player), clientWorld, 0, 0);
+        fakeEntity.updatePosition(pos.x, pos.y, pos.z);
+        fakeEntity.setVelocity(velocity);
+        FishingWorldSnapshot worldSnapshot = FishingWorldSnapshot.capture(clientWorld, fakeEntity, pos, velocity, ((ProjectileEntityAccessor) fakeEntity)::callCanHit);
+        SIMULATION_PROFILER.addCapture(System.nanoTime() - captureStart);
+
+        SimulatedFishingBobber fishingBobber = new SimulatedFishingBobber(seed, tool, pos, velocity, worldSnapshot, fakeEntity, new FishingLootEvaluator(SeedfindingUtil.getMCVersion()));
+        FishingGoalMatcher goalMatcher = FishingCracker.goalMatcher;
+
+        CompletableFuture<SimulationResult> future = new CompletableFuture<>();
+        synchronized (STATE_LOCK) {
+            if (state != State.SIMULATING) {
+                return;
+            }
+            simulationFuture = future;
+        }
+
+        SIMULATION_EXECUTOR.execute(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(simulate(fishingBobber, goalMatcher, future::isDone, SIMULATION_PROFILER));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+
+        future.whenCompleteAsync((result, error) -> {
+            if (error instanceof CancellationException) {
+                return;
+            }
+            if (error != null) {
+                LOGGER.error("Failed to simulate fishing bobber", error);
+                synchronized (STATE_LOCK) {
+                    if (simulationFuture == future) {
+                        reset();
+                    }
+                }
+                return;
+            }
+            onSimulationFinished(future, result);
+        }, MinecraftClient.getInstance());
+    }
+
+    /**
+     * Runs on the simulation executor. Must not touch any client state other than the simulated bobber itself.
+     */
+    @Nullable
+    private static SimulationResult simulate(SimulatedFishingBobber fishingBobber, FishingGoalMatcher goalMatcher, BooleanSupplier cancelled, FishingSimulationProfiler profiler) {
+        long startTime = System.nanoTime();
+        long startAllocatedBytes = FishingSimulationProfiler.getAllocatedBytes();
+        int simulatedTicks = 0;
 
-        boolean wasCatchingFish = false;
         int ticksUntilOurItem = -1;
+        Vec3d bobberDestPos = null;
         List<Catch> possibleExpectedCatches = new ArrayList<>();
         int ourExpectedCatchIndex = -1;
+        boolean wasCatchingFish = false;
+        int biteWindows = 0;
+        int numTicks = 0;
 
         List<Vec3d> bobberPositions = new ArrayList<>();
-        bobberPositions.add(pos);
-        // TODO: get a smarter number of max ticks based on the rarity of the item
-        for (int ticks = 0; ticks < 10000; ticks++) {
+        bobberPositions.add(fishingBobber.pos);
+        int maxTicks = MAX_SIMULATION_TICKS;
+        boolean plannedHorizon = false;
+        for (int ticks = 0; ; ticks++) {
+            // the horizon only cuts the search short once at least one bite window has been searched
+            if (ticks >= MAX_SIMULATION_TICKS || (ticks >= maxTicks && biteWindows >= 1)) {
+                numTicks = ticks;
+                break;
+            }
+            if ((ticks & 63) == 0 && cancelled.getAsBoolean()) {
+                return null;
+            }
+
             fishingBobber.tick();
+            simulatedTicks++;
             bobberPositions.add(fishingBobber.pos);
             if (fishingBobber.failedReason != null) {
-                bobberNumTicks = ticks;
-                for (int i = 0; i < bobberPositions.size(); i++) {
-                    int color = i == bobberPositions.size() - 1 ? 0xff0000 : 0x00ff00;
-                    RenderQueue.addCuboid(RenderQueue.Layer.ON_TOP, new ErrorEntry(i, true), SimulatedFishingBobber.FISHING_BOBBER_DIMENSIONS.getBoxAt(bobberPositions.get(i)), color, 100);
-                    if (i != 0) {
-                        RenderQueue.addLine(RenderQueue.Layer.ON_TOP, new ErrorEntry(i, false), bobberPositions.get(i - 1), bobberPositions.get(i), color, 100);
-                    }
+                numTicks = ticks;
+                break;
+            }
+
+            if (!plannedHorizon && fishingBobber.isBobbing()) {
+                plannedHorizon = true;
+                Horizon horizon = fishingBobber.planHorizon(goalMatcher.getGoals(), MAX_BITE_WINDOWS, ticks);
+                if (horizon.catchProbability() <= 0) {
+                    // none of the goals can be caught here, skip straight to diagnosing why
+                    numTicks = ticks;
+                    break;
                 }
-                Text error = Text.translatable("commands.cfish.error." + fishingBobber.failedReason).styled(style -> style.withColor(Formatting.RED));
-                ClientCommandHelper.addOverlayMessage(error, 100);
-                reset();
-                return;
+                maxTicks = Math.min(maxTicks, ticks + horizon.maxTicks());
             }
 
             if (fishingBobber.canCatchFish()) {
+                if (!wasCatchingFish && ourExpectedCatchIndex == -1) {
+                    // the previous bite windows are let go, so only this window's catches can be mixed up with ours
+                    possibleExpectedCatches.clear();
+                }
                 List<Catch> catches = fishingBobber.generateLoot();
 
-                if (ourExpectedCatchIndex == -1 && goals.stream().anyMatch(goal -> catches.stream().anyMatch(c -> goal.test(c.loot)))) {
+                if (ourExpectedCatchIndex == -1 && catches.stream().anyMatch(goalMatcher::matches)) {
                     bobberDestPos = fishingBobber.pos;
                     ticksUntilOurItem = ticks;
                     ourExpectedCatchIndex = possibleExpectedCatches.size();
@@ -357,16 +587,52 @@ public class FishingCracker {
                 possibleExpectedCatches.add(catches.get(0));
                 wasCatchingFish = true;
             } else if (wasCatchingFish) {
-                bobberNumTicks = ticks;
-                break;
+                wasCatchingFish = false;
+                biteWindows++;
+                if (ourExpectedCatchIndex != -1 || biteWindows >= MAX_BITE_WINDOWS) {
+                    numTicks = ticks;
+                    break;
+                }
             }
         }
 
-        if (ticksUntilOurItem == -1) {
+        long allocatedBytes = startAllocatedBytes == -1 ? -1 : FishingSimulationProfiler.getAllocatedBytes() - startAllocatedBytes;
+        profiler.addSimulation(simulatedTicks, System.nanoTime() - startTime, allocatedBytes);
+
+        return new SimulationResult(fishingBobber, bobberPositions, numTicks, ticksUntilOurItem, bobberDestPos, possibleExpectedCatches, ourExpectedCatchIndex);
+    }
+
+    private static void onSimulationFinished(CompletableFuture<SimulationResult> future, SimulationResult result) {
+        synchronized (STATE_LOCK) {
+            if (simulationFuture != future || state != State.SIMULATING) {
+                return;
+            }
+            simulationFuture = null;
+        }
+
+        SimulatedFishingBobber fishingBobber = result.bobber();
+        bobberNumTicks = result.numTicks();
+
+        if (fishingBobber.failedReason != null) {
+            List<Vec3d> bobberPositions = result.bobberPositions();
+            for (int i = 0; i < bobberPositions.size(); i++) {
+                int color = i == bobberPositions.size() - 1 ? 0xff0000 : 0x00ff00;
+                RenderQueue.addCuboid(RenderQueue.Layer.ON_TOP, new ErrorEntry(i, true), SimulatedFishingBobber.FISHING_BOBBER_DIMENSIONS.getBoxAt(bobberPositions.get(i)), color, 100);
+                if (i != 0) {
+                    RenderQueue.addLine(RenderQueue.Layer.ON_TOP, new ErrorEntry(i, false), bobberPositions.get(i - 1), bobberPositions.get(i), color, 100);
+                }
+            }
+            Text error = Text.translatable("commands.cfish.error." + fishingBobber.failedReason).styled(style -> style.withColor(Formatting.RED));
+            ClientCommandHelper.addOverlayMessage(error, 100);
+            reset();
+            return;
+        }
+
+        if (result.ticksUntilOurItem() == -1) {
             // diagnose issue
             Set<LootCondition> failedConditions = new HashSet<>();
             boolean impossible = true;
-            LootTable fishingLootTable = MCLootTables.FISHING.get().apply(SeedfindingUtil.getMCVersion());
+            LootTable fishingLootTable = fishingBobber.lootEvaluator.getTable();
             for (var goal : goals) {
                 if (goal instanceof ClientItemPredicateArgumentType.EnchantedItemPredicate predicate) {
                     if (predicate.isEnchantedBook() && predicate.predicate().numEnchantments() >= 2) {
@@ -394,21 +660,18 @@ public class FishingCracker {
                     }
                     boolean foundFlowingWater = false;
                     for (BlockPos openWaterViolation : fishingBobber.openWaterViolations) {
-                        if (!foundFlowingWater
-                            && fishingBobber.world.getBlockState(openWaterViolation).isOf(Blocks.WATER)
+                        if (fishingBobber.world.getBlockState(openWaterViolation).isOf(Blocks.WATER)
                             && !fishingBobber.world.getFluidState(openWaterViolation).isStill()
                         ) {
                             foundFlowingWater = true;
+                            break;
                         }
-                        RenderQueue.addCuboid(
-                                RenderQueue.Layer.ON_TOP,
-                                UUID.randomUUID(),
-                                Vec3d.of(openWaterViolation),
-                                Vec3d.of(openWaterViolation.add(1, 1, 1)),
-                                0xff0000,
-                                100
-                        );
                     }
+                    List<Box> violationBoxes = mergeBlocks(fishingBobber.openWaterViolations);
+                    for (int i = 0; i < violationBoxes.size(); i++) {
+                        RenderQueue.addCuboid(RenderQueue.Layer.ON_TOP, new OpenWaterViolationEntry(i), violationBoxes.get(i), 0xff0000, 100);
+                    }
+                    numOpenWaterViolationBoxes = violationBoxes.size();
                     ClientCommandHelper.sendHelp(Text.translatable("commands.cfish.error.openWater.help"));
                     if (foundFlowingWater) {
                         ClientCommandHelper.sendHelp(Text.translatable("commands.cfish.error.openWater.flowingWater"));
@@ -436,12 +699,18 @@ public class FishingCracker {
                 reset();
             }
         } else {
-            totalTicksToWait = ticksUntilOurItem;
-            Arrays.fill(expectedCatches, null);
-            for (int i = Math.max(0, ourExpectedCatchIndex - expectedCatches.length / 2),
-                     e = Math.min(possibleExpectedCatches.size(), ourExpectedCatchIndex + 1 + expectedCatches.length / 2);
-                 i < e; i++) {
-                expectedCatches[i - ourExpectedCatchIndex + expectedCatches.length / 2] = possibleExpectedCatches.get(i);
+            synchronized (STATE_LOCK) {
+                bobberDestPos = result.bobberDestPos();
+                totalTicksToWait = result.ticksUntilOurItem();
+                List<Catch> possibleExpectedCatches = result.possibleExpectedCatches();
+                int ourExpectedCatchIndex = result.ourExpectedCatchIndex();
+                Arrays.fill(expectedCatches, null);
+                for (int i = Math.max(0, ourExpectedCatchIndex - expectedCatches.length / 2),
+                         e = Math.min(possibleExpectedCatches.size(), ourExpectedCatchIndex + 1 + expectedCatches.length / 2);
+                     i < e; i++) {
+                    expectedCatches[i - ourExpectedCatchIndex + expectedCatches.length / 2] = possibleExpectedCatches.get(i);
+                }
+                state = State.WAITING_FOR_FISH;
             }
         }
     }
@@ -479,11 +748,14 @@ public class FishingCracker {
         Catch actualCatch = new Catch(actualLoot, experienceAmount);
         Catch expectedCatch = expectedCatches[expectedCatches.length / 2];
 
-        List<Integer> indices = IntStream.range(0, expectedCatches.length)
-                .filter(i -> actualCatch.equals(expectedCatches[i]))
-                .map(i -> i - expectedCatches.length / 2)
-                .boxed()
-                .collect(Collectors.toList());
+        int[] offsets = new int[expectedCatches.length];
+        int numOffsets = 0;
+        for (int i = 0; i < expectedCatches.length; i++) {
+            if (actualCatch.equals(expectedCatches[i])) {
+                offsets[numOffsets++] = i - expectedCatches.length / 2;
+            }
+        }
+        List<Integer> indices = Arrays.stream(offsets, 0, numOffsets).boxed().toList();
 
         if (actualCatch.equals(expectedCatch)) {
             ClientCommandHelper.addOverlayMessage(Text.translatable("commands.cfish.correctLoot", magicMillisecondsCorrection)
@@ -493,38 +765,20 @@ public class FishingCracker {
                     .styled(style -> style.withColor(Formatting.RED)), 100);
         }
 
-        if (!indices.isEmpty()) {
-            if (CombinedMedianEM.data.size() >= 10) {
-                CombinedMedianEM.data.remove(0);
-            }
-            ArrayList<Double> sample = new ArrayList<>();
-            for (int index : indices) {
-                sample.add((double) (index * serverMspt) + magicMillisecondsCorrection);
-            }
-            CombinedMedianEM.data.add(sample);
-
-            CombinedMedianEM.begintime = magicMillisecondsCorrection - serverMspt / 2 - (expectedCatches.length / 2) * serverMspt;
-            CombinedMedianEM.endtime = magicMillisecondsCorrection + serverMspt / 2 + (expectedCatches.length / 2) * serverMspt;
-            CombinedMedianEM.width = serverMspt;
-            CombinedMedianEM.run();
-            magicMillisecondsCorrection = (int) Math.round(CombinedMedianEM.mu);
-        }
+        timingModel.addCatch(offsets, numOffsets, serverMspt);
+        magicMillisecondsCorrection = timingModel.getCorrection();
     }
 
     public static void onTimeSync() {
         long time = System.nanoTime();
-        //noinspection SuspiciousSystemArraycopy
-        System.arraycopy(timeSyncTimes, 1, timeSyncTimes, 0, timeSyncTimes.length - 1);
-        timeSyncTimes[timeSyncTimes.length - 1] = time;
-        if (timeSyncTimes[0] != 0) {
-            serverMspt = (int) ((time - timeSyncTimes[0]) / ((timeSyncTimes.length - 1) * 20 * 1000000));
-        }
+        serverMspt = Math.max(1, (int) Math.round(ServerTickClock.getMspt()));
 
         if (state == State.WAITING_FOR_FISH) {
             if (estimatedTicksElapsed == 0) {
                 estimatedTicksElapsed = (int) Math.ceil((double) (time - bobberStartTime)/(serverMspt * 1000000));
             } else {
-                estimatedTicksElapsed += 20;
+                int ticks = ServerTickClock.getLastWorldTimeTicks();
+                estimatedTicksElapsed += ticks == 0 ? 20 : ticks;
             }
 
             int latestReasonableArriveTick = estimatedTicksElapsed + 20 + PingCommand.getLocalPing() / serverMspt;
@@ -533,18 +787,10 @@ public class FishingCracker {
                 int timeToStartOfTick = serverMspt - averageTimeToEndOfTick;
                 int delay = (totalTicksToWait - estimatedTicksElapsed) * serverMspt - magicMillisecondsCorrection - PingCommand.getLocalPing() - timeToStartOfTick + serverMspt / 2;
                 long targetTime = (delay) * 1000000L + System.nanoTime();
-                DELAY_EXECUTOR.schedule(() -> {
-                    if (!Configs.getFishingManipulation().isEnabled() || state != State.ASYNC_WAITING_FOR_FISH) {
-                        return;
-                    }
+                REEL_IN_TIMER.schedule(targetTime, () -> !Configs.getFishingManipulation().isEnabled() || state != State.ASYNC_WAITING_FOR_FISH, () -> {
                     ClientPlayerEntity oldPlayer = MinecraftClient.getInstance().player;
                     if (oldPlayer != null) {
                         ClientPlayNetworkHandler networkHandler = oldPlayer.networkHandler;
-                        while (System.nanoTime() - targetTime < 0) {
-                            if (state != State.ASYNC_WAITING_FOR_FISH) {
-                                return;
-                            }
-                        }
                         FishingBobberEntity oldFishingBobberEntity = oldPlayer.fishHook;
                         networkHandler.sendPacket(new PlayerInteractItemC2SPacket(Hand.MAIN_HAND, 0));
                         synchronized (STATE_LOCK) {
@@ -574,7 +820,7 @@ public class FishingCracker {
                             }
                         });
                     }
-                }, Math.max(0, delay - 100), TimeUnit.MILLISECONDS);
+                });
             }
         }
     }
@@ -629,6 +875,7 @@ public class FishingCracker {
         NOT_MANIPULATING,
         WAITING_FOR_BOBBER,
         WAITING_FOR_FIRST_BOBBER_TICK,
+        SIMULATING,
         WAITING_FOR_FISH,
         ASYNC_WAITING_FOR_FISH,
         WAITING_FOR_ITEM,
@@ -636,183 +883,168 @@ public class FishingCracker {
         WAITING_FOR_RETRHOW,
     }
 
-    public static class Catch {
-        private final ItemStack loot;
-        private final int experience;
-
-        public Catch(ItemStack loot, int experience) {
-            this.loot = loot.copy();
-            if (this.loot.isDamageable()) {
-                this.loot.setDamage(0);
-            }
-            this.experience = experience;
-        }
+    private record ErrorEntry(int tick, boolean isBox) {}
 
-        @Override
-        public int hashCode() {
-            return 7 * (31 * Objects.hash(loot.getItem(), loot.getNbt()) + loot.getCount()) + experience;
-        }
+    private record OpenWaterViolationEntry(int index) {}
 
-        @Override
-        public boolean equals(Object other) {
-            if (other == this) {
-                return true;
+    /**
+     * Merges a set of blocks into fewer boxes covering exactly the same blocks, by joining runs along the x axis, then
+     * runs of equal width along the z axis, then equal rectangles along the y axis
+     */
+    private static List<Box> mergeBlocks(Set<BlockPos> blocks) {
+        Set<BlockPos> remaining = new HashSet<>(blocks);
+        List<BlockPos> sorted = new ArrayList<>(blocks);
+        sorted.sort(Comparator.comparingInt(BlockPos::getY).thenComparingInt(BlockPos::getZ).thenComparingInt(BlockPos::getX));
+
+        List<Box> boxes = new ArrayList<>();
+        for (BlockPos start : sorted) {
+            if (!remaining.contains(start)) {
+                continue;
             }
-            if (!(other instanceof Catch that)) {
-                return false;
+            int minX = start.getX(), minY = start.getY(), minZ = start.getZ();
+            int maxX = minX;
+            while (remaining.contains(new BlockPos(maxX + 1, minY, minZ))) {
+                maxX++;
+            }
+            int maxZ = minZ;
+            while (containsAll(remaining, minX, maxX, minY, minY, maxZ + 1, maxZ + 1)) {
+                maxZ++;
+            }
+            int maxY = minY;
+            while (containsAll(remaining, minX, maxX, maxY + 1, maxY + 1, minZ, maxZ)) {
+                maxY++;
+            }
+            for (BlockPos pos : BlockPos.iterate(minX, minY, minZ, maxX, maxY, maxZ)) {
+                remaining.remove(pos);
             }
-            return ItemStack.areEqual(loot, that.loot) && experience == that.experience;
+            boxes.add(new Box(minX, minY, minZ, maxX + 1, maxY + 1, maxZ + 1));
         }
+        return boxes;
+    }
 
-        @Override
-        public String toString() {
-            return loot + " + " + experience + "xp";
+    private static boolean containsAll(Set<BlockPos> blocks, int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
+        for (BlockPos pos : BlockPos.iterate(minX, minY, minZ, maxX, maxY, maxZ)) {
+            if (!blocks.contains(pos)) {
+                return false;
+            }
         }
+        return true;
     }
 
-    // endregion
-
-    // region NETWORK DELAY ESTIMATION
+    private record SimulationResult(
+        SimulatedFishingBobber bobber,
+        List<Vec3d> bobberPositions,
+        int numTicks,
+        int ticksUntilOurItem,
+        @Nullable Vec3d bobberDestPos,
+        List<Catch> possibleExpectedCatches,
+        int ourExpectedCatchIndex
+    ) {}
 
     /**
-     * Taken from: https://gist.github.com/pseudogravity/294f12225c18bf319e4c1923dd664bd5
-     *
-     * @author MC (PseudoGravity)
+     * A catch is stored as the raw item ID, count and enchantments rather than as an item stack, so that the simulation
+     * doesn't need to build item stacks for every tick. Damage is ignored.
      */
-    private static class CombinedMedianEM {
-
-        // a list of samples
-        // each sample is actually a list of points
-        // for each interval, convert it to a point by taking the median value
-        // or... break the 50ms intervals into 2 25ms intervals for better accuracy
-        static ArrayList<ArrayList<Double>> data = new ArrayList<>();
-
-        // width of the intervals
-        static double width = 50;
-
-        // width of time window considered
-        // all of the data points for all samples are within this window
-        static int begintime = -1000;
-        static int endtime = 1000;
-
-        // three parameters and 2 constraints
-        static double packetlossrate = 0.2;
-        static double maxpacketlossrate = 0.5;
-        static double minpacketlossrate = 0.01;
-        static double mu = 0.0;
-        static double sigma = 500;
-        static double maxsigma = 1000;
-        static double minsigma = 10;
-
-        public static void run() {
-            ArrayList<Double> droprate = new ArrayList<>();
-
-            for (ArrayList<Double> sample : data) {
-                droprate.add(sample.size() * width / (endtime - begintime));
-            }
-
-            ArrayList<Double> times = new ArrayList<>();
-            for (int i = begintime; i <= endtime; i += 10) {
-                times.add(i * 1.0);
-            }
-
-            double besttime = 0;
-            double bestscore = Double.MAX_VALUE;
-
-            for (double time : times) {
-                // find score for each option for time
-                double score = 0;
-                for (int i = 0; i < data.size(); i++) {
-                    // for each sample, find the point which adds the least to the score
-                    ArrayList<Double> sample = data.get(i);
-                    double lambda = droprate.get(i) / width;
-                    double bestsubscore = Double.MAX_VALUE;
-                    for (Double x : sample) {
-                        double absdev = Math.abs(x - time);
-                        absdev = (1 - Math.exp(-lambda * absdev)) / lambda; // further curbing outlier effects
-                        if (absdev < bestsubscore) {
-                            bestsubscore = absdev;
-                        }
-                    }
-                    score += bestsubscore;
-                }
-                if (score < bestscore) {
-                    bestscore = score;
-                    besttime = time;
-                }
-            }
-
-            mu = besttime;
-            sigma = bestscore / data.size();
-            sigma = Math.max(Math.min(sigma, maxsigma), minsigma);
-
-            for (int repeat = 0; repeat < 1; repeat++) {
-                // E step
-                // calculate weights (and classifications)
-                var masses = new ArrayList<ArrayList<Double>>();
-                for (int i = 0; i < data.size(); i++) {
+    public static class Catch {
+        private final int itemId;
+        private final int count;
+        private final List<EnchantmentLevelEntry> enchantments;
+        // any other NBT, apart from the damage, which isn't predicted. Must not be modified
+        @Nullable
+        private final NbtCompound nbt;
+        private final int experience;
 
-                    ArrayList<Double> sample = data.get(i);
+        Catch(int itemId, int count, List<EnchantmentLevelEntry> enchantments, @Nullable NbtCompound nbt, int experience) {
+            this.itemId = itemId;
+            this.count = count;
+            this.enchantments = enchantments;
+            this.nbt = nbt;
+            this.experience = experience;
+        }
 
-                    // process each sample
-                    double sum = 0;
-                    for (double x : sample) {
-                        sum += mass(x);
-                    }
-                    double pXandNorm = Math.min(sum, 1) * (1 - packetlossrate); // cap at 1
+        public Catch(ItemStack loot, int experience) {
+            this.itemId = Item.getRawId(loot.getItem());
+            this.count = loot.getCount();
+            this.enchantments = EnchantmentHelper.get(loot).entrySet().stream()
+                .map(entry -> new EnchantmentLevelEntry(entry.getKey(), entry.getValue()))
+                .toList();
+            NbtCompound nbt = loot.getNbt();
+            if (nbt != null) {
+                nbt = nbt.copy();
+                nbt.remove(ItemStack.DAMAGE_KEY);
+                nbt.remove(ItemStack.ENCHANTMENTS_KEY);
+                nbt.remove(EnchantedBookItem.STORED_ENCHANTMENTS_KEY);
+                if (nbt.isEmpty()) {
+                    nbt = null;
+                }
+            }
+            this.nbt = nbt;
+            this.experience = experience;
+        }
 
-                    double pXandUnif = droprate.get(i) * packetlossrate;
+        int getItemId() {
+            return itemId;
+        }
 
-                    double pNorm = pXandNorm / (pXandNorm + pXandUnif);
+        public Item getItem() {
+            return Item.byRawId(itemId);
+        }
 
-                    ArrayList<Double> mass = new ArrayList<>();
-                    for (double x : sample) {
-                        mass.add(mass(x) / sum * pNorm);
-                    }
+        List<EnchantmentLevelEntry> getEnchantments() {
+            return enchantments;
+        }
 
-                    masses.add(mass);
+        public ItemStack toItemStack() {
+            Item item = getItem();
+            ItemStack stack = new ItemStack(item, count);
+            if (nbt != null) {
+                stack.setNbt(nbt.copy());
+            }
+            for (EnchantmentLevelEntry enchantment : enchantments) {
+                if (item == Items.ENCHANTED_BOOK) {
+                    EnchantedBookItem.addEnchantment(stack, enchantment);
+                } else {
+                    stack.addEnchantment(enchantment.enchantment, enchantment.level);
                 }
+            }
+            return stack;
+        }
 
-                // M step
-                // compute new best estimate for parameters
-                double weightedsum = 0;
-                double sumofweights = 0;
-                for (int i = 0; i < data.size(); i++) {
-                    ArrayList<Double> sample = data.get(i);
-                    ArrayList<Double> mass = masses.get(i);
-                    for (int j = 0; j < sample.size(); j++) {
-                        weightedsum += sample.get(j) * mass.get(j);
-                        sumofweights += mass.get(j);
-                    }
-                }
-                double muNext = weightedsum / sumofweights;
-
-                double weightedsumofsquaredeviations = 0;
-                for (int i = 0; i < data.size(); i++) {
-                    ArrayList<Double> sample = data.get(i);
-                    ArrayList<Double> mass = masses.get(i);
-                    for (int j = 0; j < sample.size(); j++) {
-                        weightedsumofsquaredeviations += Math.pow(sample.get(j) - muNext, 2) * mass.get(j);
-                    }
+        private boolean hasSameEnchantments(Catch other) {
+            if (enchantments.size() != other.enchantments.size()) {
+                return false;
+            }
+            for (EnchantmentLevelEntry enchantment : enchantments) {
+                if (other.enchantments.stream().noneMatch(e -> e.enchantment == enchantment.enchantment && e.level == enchantment.level)) {
+                    return false;
                 }
-                double sigmaNext = Math.sqrt(weightedsumofsquaredeviations / sumofweights);
-                sigmaNext = Math.max(Math.min(sigmaNext, maxsigma), minsigma);
+            }
+            return true;
+        }
 
-                double packetlossrateNext = (data.size() - sumofweights) / data.size();
-                packetlossrateNext = Math.max(Math.min(packetlossrateNext, maxpacketlossrate), minpacketlossrate);
+        @Override
+        public int hashCode() {
+            int enchantmentsHash = 0;
+            for (EnchantmentLevelEntry enchantment : enchantments) {
+                enchantmentsHash += 31 * enchantment.enchantment.hashCode() + enchantment.level;
+            }
+            return 7 * (31 * (31 * (31 * itemId + enchantmentsHash) + Objects.hashCode(nbt)) + count) + experience;
+        }
 
-                mu = muNext;
-                sigma = sigmaNext;
-                packetlossrate = packetlossrateNext;
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
             }
+            if (!(other instanceof Catch that)) {
+                return false;
+            }
+            return itemId == that.itemId && count == that.count && experience == that.experience && hasSameEnchantments(that) && Objects.equals(nbt, that.nbt);
         }
 
-        public static double mass(double x) {
-            // should be cdf(x+width/2)-cdf(x-width/2) but is simplified to pdf(x)*width and
-            // capped at 1
-            // to avoid pesky erf() functions
-            double pdf = 1 / (sigma * Math.sqrt(2 * Math.PI)) * Math.exp(-Math.pow((x - mu) / sigma, 2) / 2);
-            return Math.min(pdf * width, 1);
+        @Override
+        public String toString() {
+            return toItemStack() + " + " + experience + "xp";
         }
     }
 
@@ -823,9 +1055,9 @@ public class FishingCracker {
     private static class SimulatedFishingBobber {
         private static final EntityDimensions FISHING_BOBBER_DIMENSIONS = EntityType.FISHING_BOBBER.getDimensions();
 
-        private final World world = Objects.requireNonNull(MinecraftClient.getInstance().world);
+        private final FishingWorldSnapshot world;
 
-        private final FishingBobberEntity fakeEntity = new FishingBobberEntity(Objects.requireNonNull(MinecraftClient.getInstance().player), world, 0, 0);
+        private final FishingBobberEntity fakeEntity;
 
         // state variables
         private Vec3d pos;
@@ -837,6 +1069,8 @@ public class FishingCracker {
         private int fishTravelCountdown;
         private boolean inOpenWater = true;
         private final Set<BlockPos> openWaterViolations = new LinkedHashSet<>(0);
+        // the world snapshot doesn't change, so the open water check only needs to run once per block the bobber is in
+        private final Long2BooleanMap openWaterByBlock = new Long2BooleanOpenHashMap();
         private int outOfOpenWaterTicks;
         private boolean caughtFish;
         private boolean horizontalCollision;
@@ -847,7 +1081,8 @@ public class FishingCracker {
 
         private float fishAngle;
 
-        private final Random random;
+        private final LcgRandom random;
+        private final FishingLootEvaluator lootEvaluator;
         private final ItemStack tool;
         private final int lureLevel;
         private final int luckLevel;
@@ -856,8 +1091,12 @@ public class FishingCracker {
         @Nullable
         private String failedReason;
 
-        public SimulatedFishingBobber(long seed, ItemStack tool, Vec3d pos, Vec3d velocity) {
-            this.random = Random.create(seed ^ 0x5deece66dL);
+        /**
+         * Only reads from the given world snapshot, fake entity and loot evaluator, so the simulation can run without
+         * a client world
+         */
+        public SimulatedFishingBobber(long seed, ItemStack tool, Vec3d pos, Vec3d velocity, FishingWorldSnapshot world, FishingBobberEntity fakeEntity, FishingLootEvaluator lootEvaluator) {
+            this.random = LcgRandom.ofInternalSeed(seed);
             // entity UUID
             MathHelper.randomUuid(random);
 
@@ -872,34 +1111,46 @@ public class FishingCracker {
             this.pos = pos;
             this.velocity = velocity;
             this.boundingBox = FISHING_BOBBER_DIMENSIONS.getBoxAt(pos.x, pos.y, pos.z);
+
+            this.world = world;
+            this.fakeEntity = fakeEntity;
+            this.lootEvaluator = lootEvaluator;
         }
 
         public boolean canCatchFish() {
             return hookCountdown > 0;
         }
 
-        public List<Catch> generateLoot() {
-            fakeEntity.updatePosition(pos.x, pos.y, pos.z);
-            fakeEntity.setVelocity(velocity);
+        public boolean isBobbing() {
+            return state == State.BOBBING;
+        }
 
-            LootContext lootContext = getLootContext();
+        public Horizon planHorizon(List<ClientItemPredicateArgumentType.ClientItemPredicate> goals, int biteWindows, int castTicks) {
+            // assume open water here, the open water state can still change before the fish bites
+            LootContext lootContext = getLootContext().withOpenWater(true);
+            double catchProbability = getMatchingLootProbability(lootEvaluator.getTable(), lootContext, luckLevel, goals);
 
-            List<Catch> catches = new ArrayList<>();
-            for (var loot : MCLootTables.FISHING.get().generate(lootContext)) {
-                catches.add(new Catch(SeedfindingUtil.fromSeedfindingItem(loot), 1 + lootContext.nextInt(6)));
-            }
+            BlockPos blockPos = BlockPos.ofFloored(pos).up();
+            return FishingCracker.planHorizon(catchProbability, lureLevel, world.isSkyVisible(blockPos), world.hasRain(blockPos), biteWindows, castTicks);
+        }
 
-            return catches;
+        public List<Catch> generateLoot() {
+            return lootEvaluator.generateCatches(getLootContext());
         }
 
         private LootContext getLootContext() {
-            return new LootContext(((CheckedRandomAccessor) random).getSeed().get() ^ 0x5deece66dL, SeedfindingUtil.getMCVersion())
-                .withBiome(SeedfindingUtil.toSeedfindingBiome(world, world.getBiome(BlockPos.ofFloored(pos))))
+            return new LootContext(random.getInternalSeed() ^ 0x5deece66dL, lootEvaluator.getVersion())
+                .withBiome(world.getSeedfindingBiome(BlockPos.ofFloored(pos)))
                 .withOpenWater(inOpenWater)
                 .withLuck(luckLevel);
         }
 
         public void tick() {
+            if (!world.isInSimulationRange(BlockPos.ofFloored(this.pos))) {
+                failedReason = "tooFar";
+                return;
+            }
+
             onBaseTick();
 
             if (this.onGround) {
@@ -1083,17 +1334,17 @@ public class FishingCracker {
         }
 
         private void checkForCollision() {
+            // same as ProjectileUtil.getCollision, an entity hit only matters if there is no block hit
             fakeEntity.updatePosition(pos.x, pos.y, pos.z);
-            fakeEntity.setVelocity(velocity);
-            HitResult hitResult = ProjectileUtil.getCollision(fakeEntity, ((ProjectileEntityAccessor) fakeEntity)::callCanHit);
-            if (hitResult.getType() != HitResult.Type.MISS) {
+            Vec3d start = this.pos;
+            Vec3d end = this.pos.add(this.velocity);
+            HitResult hitResult = this.world.raycast(new RaycastContext(start, end, RaycastContext.ShapeType.COLLIDER, RaycastContext.FluidHandling.NONE, fakeEntity));
+            if (hitResult.getType() != HitResult.Type.MISS || this.world.hitsEntity(this.boundingBox.stretch(this.velocity).expand(1.0D), start, end)) {
                 failedReason = "collision";
             }
         }
 
         private void move(Vec3d movement) {
-            assert world != null;
-
             Vec3d vec3d = this.adjustMovementForCollisions(movement);
             if (vec3d.lengthSquared() > 1.0E-7D) {
                 this.boundingBox = this.boundingBox.offset(vec3d);
@@ -1126,29 +1377,32 @@ public class FishingCracker {
 
             float i = this.getVelocityMultiplier();
             this.velocity = this.velocity.multiply((double)i, 1.0D, (double)i);
-            if (this.world.getStatesInBoxIfLoaded(this.boundingBox.contract(0.001D)).anyMatch((blockStatex) -> blockStatex.isIn(BlockTags.FIRE) || blockStatex.isOf(Blocks.LAVA))) {
+            if (this.world.anyStateInBoxIfLoaded(this.boundingBox.contract(0.001D), (blockStatex) -> blockStatex.isIn(BlockTags.FIRE) || blockStatex.isOf(Blocks.LAVA))) {
                 failedReason = "fire";
             }
         }
 
         private Vec3d adjustMovementForCollisions(Vec3d movement) {
             Box box = this.boundingBox;
+            if (movement.lengthSquared() == 0.0D) {
+                return movement;
+            }
             fakeEntity.updatePosition(pos.x, pos.y, pos.z);
             fakeEntity.setVelocity(velocity);
-            assert world != null;
 
-            VoxelShape voxelShape = this.world.getWorldBorder().asVoxelShape();
+            VoxelShape voxelShape = this.world.getWorldBorderShape();
             List<VoxelShape> voxelShapes = new ArrayList<>();
             if (!VoxelShapes.matchesAnywhere(voxelShape, VoxelShapes.cuboid(box.contract(1.0E-7D)), BooleanBiFunction.AND)) {
                 voxelShapes.add(voxelShape);
             }
-            voxelShapes.addAll(this.world.getEntityCollisions(fakeEntity, box.stretch(movement)));
+            Box stretchedBox = box.stretch(movement);
+            this.world.collectEntityCollisions(stretchedBox.expand(1.0E-7D), voxelShapes);
+            this.world.collectBlockCollisions(ShapeContext.of(fakeEntity), stretchedBox, voxelShapes);
 
-            return movement.lengthSquared() == 0.0D ? movement : Entity.adjustMovementForCollisions(fakeEntity, movement, box, this.world, voxelShapes);
+            return FishingWorldSnapshot.adjustMovementForCollisions(movement, box, voxelShapes);
         }
 
         private float getVelocityMultiplier() {
-            assert world != null;
             Block block = this.world.getBlockState(BlockPos.ofFloored(pos)).getBlock();
             float f = block.getVelocityMultiplier();
             if (block != Blocks.WATER && block != Blocks.BUBBLE_COLUMN) {
@@ -1159,12 +1413,22 @@ public class FishingCracker {
         }
 
         private boolean isOpenOrWaterAround(BlockPos pos) {
+            long key = pos.asLong();
+            if (openWaterByBlock.containsKey(key)) {
+                return openWaterByBlock.get(key);
+            }
+            boolean openWater = computeOpenOrWaterAround(pos);
+            openWaterByBlock.put(key, openWater);
+            return openWater;
+        }
+
+        private boolean computeOpenOrWaterAround(BlockPos pos) {
             PositionType positionType = PositionType.INVALID;
 
             boolean valid = true;
 
             for (int i = -1; i <= 2; ++i) {
-                PositionType positionType2 = this.getPositionType(pos.add(-2, i, -2), pos.add(2, i, 2));
+                PositionType positionType2 = this.getLayerPositionType(pos.getX(), pos.getY() + i, pos.getZ());
                 switch (positionType2) {
                     case INVALID:
                         valid = false;
@@ -1208,12 +1472,22 @@ public class FishingCracker {
             return valid;
         }
 
-        private PositionType getPositionType(BlockPos start, BlockPos end) {
-            return BlockPos.stream(start, end).map(this::getPositionType).reduce((positionType, positionType2) -> positionType == positionType2 ? positionType : PositionType.INVALID).orElse(PositionType.INVALID);
+        private PositionType getLayerPositionType(int x, int y, int z) {
+            BlockPos.Mutable mutablePos = new BlockPos.Mutable();
+            PositionType layerType = null;
+            for (int dx = -2; dx <= 2; dx++) {
+                for (int dz = -2; dz <= 2; dz++) {
+                    PositionType positionType = getPositionType(mutablePos.set(x + dx, y, z + dz));
+                    if (positionType == PositionType.INVALID || (layerType != null && positionType != layerType)) {
+                        return PositionType.INVALID;
+                    }
+                    layerType = positionType;
+                }
+            }
+            return layerType;
         }
 
         private PositionType getPositionType(BlockPos pos) {
-            assert world != null;
             BlockState blockState = this.world.getBlockState(pos);
             if (!blockState.isAir() && !blockState.isOf(Blocks.LILY_PAD)) {
                 FluidState fluidState = blockState.getFluidState();
@@ -1224,7 +1498,6 @@ public class FishingCracker {
         }
 
         private void tickFishingLogic(BlockPos pos) {
-            assert world != null;
             int i = 1;
             BlockPos blockPos = pos.up();
             if (this.random.nextFloat() < 0.25F && this.world.hasRain(blockPos)) {
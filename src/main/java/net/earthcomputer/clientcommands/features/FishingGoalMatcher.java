@@ -0,0 +1,77 @@
+package net.earthcomputer.clientcommands.features;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import net.earthcomputer.clientcommands.command.arguments.ClientItemPredicateArgumentType;
+import net.minecraft.item.Item;
+import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The fishing goals compiled into a single matcher. Catches are first rejected by item ID using a bitset, and only
+ * catches of a goal item are checked further. Enchanted goals check the enchantments of the catch directly, only goals
+ * with NBT need an item stack to be built.
+ */
+final class FishingGoalMatcher {
+    static final FishingGoalMatcher EMPTY = compile(List.of());
+
+    private final List<ClientItemPredicateArgumentType.ClientItemPredicate> goals;
+    private final BitSet goalItems = new BitSet();
+    private final Int2ObjectMap<List<Predicate<FishingCracker.Catch>>> checksByItem = new Int2ObjectOpenHashMap<>();
+
+    private FishingGoalMatcher(List<ClientItemPredicateArgumentType.ClientItemPredicate> goals) {
+        this.goals = goals;
+    }
+
+    static FishingGoalMatcher compile(List<ClientItemPredicateArgumentType.ClientItemPredicate> goals) {
+        FishingGoalMatcher matcher = new FishingGoalMatcher(List.copyOf(goals));
+        for (ClientItemPredicateArgumentType.ClientItemPredicate goal : matcher.goals) {
+            if (goal instanceof ClientItemPredicateArgumentType.EnchantedItemPredicate enchantedGoal) {
+                var predicate = enchantedGoal.predicate();
+                Predicate<FishingCracker.Catch> check = c -> predicate.predicate().test(c.getEnchantments());
+                matcher.addCheck(predicate.item(), check);
+                // same as ItemAndEnchantmentsPredicate.test
+                if (predicate.item() == Items.BOOK) {
+                    matcher.addCheck(Items.ENCHANTED_BOOK, check);
+                }
+            } else {
+                NbtCompound nbt = goal instanceof ClientItemPredicateArgumentType.ItemPredicate itemGoal ? itemGoal.compound()
+                    : goal instanceof ClientItemPredicateArgumentType.TagPredicate tagGoal ? tagGoal.compound()
+                    : null;
+                Predicate<FishingCracker.Catch> check = nbt == null || nbt.isEmpty() ? c -> true : c -> goal.test(c.toItemStack());
+                for (Item item : goal.getPossibleItems()) {
+                    matcher.addCheck(item, check);
+                }
+            }
+        }
+        return matcher;
+    }
+
+    private void addCheck(Item item, Predicate<FishingCracker.Catch> check) {
+        int itemId = Item.getRawId(item);
+        goalItems.set(itemId);
+        checksByItem.computeIfAbsent(itemId, k -> new ArrayList<>()).add(check);
+    }
+
+    public List<ClientItemPredicateArgumentType.ClientItemPredicate> getGoals() {
+        return goals;
+    }
+
+    public boolean matches(FishingCracker.Catch c) {
+        int itemId = c.getItemId();
+        if (!goalItems.get(itemId)) {
+            return false;
+        }
+        for (Predicate<FishingCracker.Catch> check : checksByItem.get(itemId)) {
+            if (check.test(c)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,125 @@
+package net.earthcomputer.clientcommands.features;
+
+import com.seedfinding.mccore.version.MCVersion;
+import com.seedfinding.mcfeature.loot.LootContext;
+import com.seedfinding.mcfeature.loot.LootPool;
+import com.seedfinding.mcfeature.loot.LootTable;
+import com.seedfinding.mcfeature.loot.MCLootTables;
+import com.seedfinding.mcfeature.loot.entry.ItemEntry;
+import com.seedfinding.mcfeature.loot.entry.LootEntry;
+import com.seedfinding.mcfeature.loot.entry.TableEntry;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.enchantment.Enchantment;
+import net.minecraft.enchantment.EnchantmentLevelEntry;
+import net.minecraft.item.Item;
+import net.minecraft.item.Items;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.potion.PotionUtil;
+import net.minecraft.registry.Registries;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.Util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates fishing loot for the bobber simulation. The seedfinding loot tables are still used to roll the loot, as
+ * they make the same RNG calls as vanilla, but the results are converted into compact {@link FishingCracker.Catch}es
+ * through lookup tables built up front, rather than into item stacks. Seedfinding doesn't keep NBT set by loot functions
+ * other than enchantments, so that is added back here. Not thread safe.
+ */
+final class FishingLootEvaluator {
+    private static final int BOOK_ID = Item.getRawId(Items.BOOK);
+    private static final int ENCHANTED_BOOK_ID = Item.getRawId(Items.ENCHANTED_BOOK);
+    private static final int POTION_ID = Item.getRawId(Items.POTION);
+    // the fishing loot table sets the potion of its water bottles
+    private static final NbtCompound WATER_BOTTLE_NBT = Util.make(new NbtCompound(), nbt -> nbt.putString(PotionUtil.POTION_KEY, "minecraft:water"));
+
+    private final MCVersion version;
+    private final LootTable generatingTable;
+    private final LootTable versionedTable;
+    private final Object2IntMap<String> itemIds = new Object2IntOpenHashMap<>();
+    private final Map<String, Enchantment> enchantments = new HashMap<>();
+
+    FishingLootEvaluator(MCVersion version) {
+        this.version = version;
+        this.generatingTable = MCLootTables.FISHING.get();
+        this.versionedTable = MCLootTables.FISHING.get().apply(version);
+        itemIds.defaultReturnValue(-1);
+        collectItemIds(versionedTable);
+    }
+
+    private void collectItemIds(LootTable table) {
+        for (LootPool pool : table.lootPools) {
+            for (LootEntry entry : pool.lootEntries) {
+                if (entry instanceof ItemEntry itemEntry) {
+                    getItemId(itemEntry.item.getName());
+                } else if (entry instanceof TableEntry tableEntry) {
+                    collectItemIds(tableEntry.table.get().apply(version));
+                }
+            }
+        }
+    }
+
+    public MCVersion getVersion() {
+        return version;
+    }
+
+    /**
+     * The fishing loot table with the entries for this version applied
+     */
+    public LootTable getTable() {
+        return versionedTable;
+    }
+
+    public List<FishingCracker.Catch> generateCatches(LootContext context) {
+        var loot = generatingTable.generate(context);
+        if (loot.size() == 1) {
+            return List.of(toCatch(loot.iterator().next(), 1 + context.nextInt(6)));
+        }
+
+        List<FishingCracker.Catch> catches = new ArrayList<>(loot.size());
+        for (var stack : loot) {
+            catches.add(toCatch(stack, 1 + context.nextInt(6)));
+        }
+        return catches;
+    }
+
+    private FishingCracker.Catch toCatch(com.seedfinding.mcfeature.loot.item.ItemStack stack, int experience) {
+        var item = stack.getItem();
+        int itemId = getItemId(item.getName());
+
+        var seedfindingEnchantments = item.getEnchantments();
+        if (seedfindingEnchantments.isEmpty()) {
+            return new FishingCracker.Catch(itemId, stack.getCount(), List.of(), itemId == POTION_ID ? WATER_BOTTLE_NBT : null, experience);
+        }
+
+        if (itemId == BOOK_ID) {
+            itemId = ENCHANTED_BOOK_ID;
+        }
+        List<EnchantmentLevelEntry> enchantments = new ArrayList<>(seedfindingEnchantments.size());
+        for (var enchAndLevel : seedfindingEnchantments) {
+            Enchantment enchantment = getEnchantment(enchAndLevel.getFirst());
+            if (enchantment != null) {
+                enchantments.add(new EnchantmentLevelEntry(enchantment, enchAndLevel.getSecond()));
+            }
+        }
+        return new FishingCracker.Catch(itemId, stack.getCount(), enchantments, null, experience);
+    }
+
+    private int getItemId(String name) {
+        int itemId = itemIds.getInt(name);
+        if (itemId == -1) {
+            itemId = Item.getRawId(Registries.ITEM.get(new Identifier(name)));
+            itemIds.put(name, itemId);
+        }
+        return itemId;
+    }
+
+    private Enchantment getEnchantment(String name) {
+        return enchantments.computeIfAbsent(name, k -> Registries.ENCHANTMENT.get(new Identifier(k)));
+    }
+}
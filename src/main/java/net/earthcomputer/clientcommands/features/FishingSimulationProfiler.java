@@ -0,0 +1,82 @@
+package net.earthcomputer.clientcommands.features;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Measures the cost of the fishing bobber simulation on every cast: how long capturing the world snapshot takes on the
+ * client thread, and how many ticks per second the simulation runs at and how much it allocates per tick on the
+ * simulation thread. Allocations are only measured on JVMs which support per-thread allocation counting.
+ */
+public final class FishingSimulationProfiler {
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+    private static final boolean ALLOCATIONS_SUPPORTED = isAllocationCountingSupported();
+
+    private int simulations;
+    private long captureNanos;
+    private long simulatedTicks;
+    private long simulationNanos;
+    private long allocatedBytes;
+
+    private static boolean isAllocationCountingSupported() {
+        if (!(THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean threadMXBean)) {
+            return false;
+        }
+        try {
+            if (!threadMXBean.isThreadAllocatedMemorySupported()) {
+                return false;
+            }
+            if (!threadMXBean.isThreadAllocatedMemoryEnabled()) {
+                threadMXBean.setThreadAllocatedMemoryEnabled(true);
+            }
+            return true;
+        } catch (UnsupportedOperationException | SecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The number of bytes allocated so far by the current thread, or -1 if unsupported
+     */
+    static long getAllocatedBytes() {
+        if (!ALLOCATIONS_SUPPORTED) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    synchronized void addCapture(long nanos) {
+        captureNanos += nanos;
+    }
+
+    synchronized void addSimulation(int ticks, long nanos, long allocatedBytes) {
+        simulations++;
+        simulatedTicks += ticks;
+        simulationNanos += nanos;
+        if (allocatedBytes >= 0) {
+            this.allocatedBytes += allocatedBytes;
+        }
+    }
+
+    public synchronized int getSimulations() {
+        return simulations;
+    }
+
+    public synchronized double getMeanCaptureMillis() {
+        return simulations == 0 ? 0 : captureNanos / 1_000_000.0 / simulations;
+    }
+
+    public synchronized double getTicksPerSecond() {
+        return simulationNanos == 0 ? 0 : simulatedTicks * 1_000_000_000.0 / simulationNanos;
+    }
+
+    /**
+     * The mean number of bytes allocated per simulated tick, or -1 if unsupported
+     */
+    public synchronized double getBytesPerTick() {
+        if (!ALLOCATIONS_SUPPORTED) {
+            return -1;
+        }
+        return simulatedTicks == 0 ? 0 : (double) allocatedBytes / simulatedTicks;
+    }
+}
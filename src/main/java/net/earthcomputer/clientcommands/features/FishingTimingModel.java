@@ -0,0 +1,266 @@
+package net.earthcomputer.clientcommands.features;
+
+import com.mojang.logging.LogUtils;
+import net.earthcomputer.clientcommands.ClientCommands;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtIo;
+import net.minecraft.util.Util;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The learned network delay correction for fishing manipulation on a server, together with statistics on how well the
+ * timing has worked there. Both are saved per server address when leaving the server, so that reconnecting doesn't
+ * start from scratch.
+ *
+ * <p>The correction is estimated with an online version of the EM algorithm by MC (PseudoGravity) from
+ * https://gist.github.com/pseudogravity/294f12225c18bf319e4c1923dd664bd5. Rather than refitting the model to the last
+ * 10 samples on every catch, each sample updates exponentially decaying sufficient statistics in constant time.</p>
+ */
+public class FishingTimingModel {
+    private static final Logger LOGGER = LogUtils.getLogger();
+
+    public static final int DEFAULT_CORRECTION = -100;
+    public static final int MSPT_BUCKET_WIDTH = 5;
+    public static final int MSPT_BUCKETS = 41;
+
+    // remembers roughly the last 10 samples
+    private static final double DECAY = 0.9;
+
+    private static final double MAX_PACKET_LOSS_RATE = 0.5;
+    private static final double MIN_PACKET_LOSS_RATE = 0.01;
+    private static final double MAX_SIGMA = 1000;
+    private static final double MIN_SIGMA = 10;
+
+    @Nullable
+    private final String serverAddress;
+
+    // model parameters
+    private double mu = DEFAULT_CORRECTION;
+    private double sigma = 500;
+    private double packetLossRate = 0.2;
+
+    // decayed sufficient statistics
+    private double sampleWeight;
+    private double massSum;
+    private double weightedSum;
+    private double weightedSquareSum;
+
+    // statistics
+    private int correctCatches;
+    private int wrongCatches;
+    private int unmatchedCatches;
+    private final int[] offsetCounts;
+    private final int[] msptCounts = new int[MSPT_BUCKETS];
+
+    private boolean dirty;
+
+    private FishingTimingModel(@Nullable String serverAddress, int numOffsets) {
+        this.serverAddress = serverAddress;
+        this.offsetCounts = new int[numOffsets];
+    }
+
+    @Nullable
+    public String getServerAddress() {
+        return serverAddress;
+    }
+
+    public int getCorrection() {
+        return (int) Math.round(mu);
+    }
+
+    public double getSigma() {
+        return sigma;
+    }
+
+    public double getPacketLossRate() {
+        return packetLossRate;
+    }
+
+    /**
+     * Adds the outcome of a catch.
+     *
+     * @param offsets The offsets in ticks from the expected catch of each catch in the window which matched the actual
+     *                catch, ordered from the earliest.
+     * @param numOffsets The number of offsets in the array which are valid
+     * @param mspt The server MSPT at the time of the catch
+     */
+    public void addCatch(int[] offsets, int numOffsets, int mspt) {
+        dirty = true;
+        int middle = offsetCounts.length / 2;
+        boolean correct = false;
+        for (int i = 0; i < numOffsets; i++) {
+            if (offsets[i] == 0) {
+                correct = true;
+            }
+            offsetCounts[offsets[i] + middle]++;
+        }
+        if (correct) {
+            correctCatches++;
+        } else if (numOffsets != 0) {
+            wrongCatches++;
+        } else {
+            unmatchedCatches++;
+        }
+        msptCounts[Math.min(MSPT_BUCKETS - 1, Math.max(0, mspt / MSPT_BUCKET_WIDTH))]++;
+
+        if (numOffsets != 0) {
+            int correction = getCorrection();
+            double[] points = new double[numOffsets];
+            for (int i = 0; i < numOffsets; i++) {
+                points[i] = offsets[i] * mspt + correction;
+            }
+            addSample(points, mspt, (double) numOffsets / offsetCounts.length);
+        }
+    }
+
+    private void addSample(double[] points, double width, double dropRate) {
+        // E step
+        double sum = 0;
+        for (double x : points) {
+            sum += mass(x, width);
+        }
+        double pXandNorm = Math.min(sum, 1) * (1 - packetLossRate); // cap at 1
+        double pXandUnif = dropRate * packetLossRate;
+        double pNorm = sum == 0 ? 0 : pXandNorm / (pXandNorm + pXandUnif);
+
+        sampleWeight = sampleWeight * DECAY + 1;
+        massSum *= DECAY;
+        weightedSum *= DECAY;
+        weightedSquareSum *= DECAY;
+        if (sum != 0) {
+            for (double x : points) {
+                double mass = mass(x, width) / sum * pNorm;
+                massSum += mass;
+                weightedSum += x * mass;
+                weightedSquareSum += x * x * mass;
+            }
+        }
+
+        // M step
+        if (massSum > 0) {
+            mu = weightedSum / massSum;
+            double variance = Math.max(0, weightedSquareSum / massSum - mu * mu);
+            sigma = Math.max(Math.min(Math.sqrt(variance), MAX_SIGMA), MIN_SIGMA);
+        }
+        packetLossRate = Math.max(Math.min((sampleWeight - massSum) / sampleWeight, MAX_PACKET_LOSS_RATE), MIN_PACKET_LOSS_RATE);
+    }
+
+    private double mass(double x, double width) {
+        // should be cdf(x+width/2)-cdf(x-width/2) but is simplified to pdf(x)*width and
+        // capped at 1
+        // to avoid pesky erf() functions
+        double pdf = 1 / (sigma * Math.sqrt(2 * Math.PI)) * Math.exp(-Math.pow((x - mu) / sigma, 2) / 2);
+        return Math.min(pdf * width, 1);
+    }
+
+    public int getCorrectCatches() {
+        return correctCatches;
+    }
+
+    public int getWrongCatches() {
+        return wrongCatches;
+    }
+
+    public int getUnmatchedCatches() {
+        return unmatchedCatches;
+    }
+
+    /**
+     * How often a catch in the window matched the actual catch, indexed by the offset in ticks plus half the window
+     */
+    public int[] getOffsetCounts() {
+        return offsetCounts;
+    }
+
+    /**
+     * The server MSPT at each catch, in buckets of {@link #MSPT_BUCKET_WIDTH} milliseconds
+     */
+    public int[] getMsptCounts() {
+        return msptCounts;
+    }
+
+    @Nullable
+    private static Path getFile(@Nullable String serverAddress) {
+        if (serverAddress == null) {
+            return null;
+        }
+        return ClientCommands.configDir.resolve("fishing").resolve(ClientCommands.toFileName(serverAddress) + ".dat");
+    }
+
+    public static FishingTimingModel load(@Nullable String serverAddress, int numOffsets) {
+        FishingTimingModel model = new FishingTimingModel(serverAddress, numOffsets);
+        Path file = getFile(serverAddress);
+        if (file == null || !Files.exists(file)) {
+            return model;
+        }
+
+        try {
+            NbtCompound rootTag = NbtIo.read(file);
+            if (rootTag == null) {
+                return model;
+            }
+            model.mu = rootTag.getDouble("Mu");
+            model.sigma = rootTag.getDouble("Sigma");
+            model.packetLossRate = rootTag.getDouble("PacketLossRate");
+            model.sampleWeight = rootTag.getDouble("SampleWeight");
+            model.massSum = rootTag.getDouble("MassSum");
+            model.weightedSum = rootTag.getDouble("WeightedSum");
+            model.weightedSquareSum = rootTag.getDouble("WeightedSquareSum");
+            model.correctCatches = rootTag.getInt("CorrectCatches");
+            model.wrongCatches = rootTag.getInt("WrongCatches");
+            model.unmatchedCatches = rootTag.getInt("UnmatchedCatches");
+            int[] offsetCounts = rootTag.getIntArray("OffsetCounts");
+            if (offsetCounts.length == numOffsets) {
+                System.arraycopy(offsetCounts, 0, model.offsetCounts, 0, numOffsets);
+            }
+            int[] msptCounts = rootTag.getIntArray("MsptCounts");
+            if (msptCounts.length == MSPT_BUCKETS) {
+                System.arraycopy(msptCounts, 0, model.msptCounts, 0, MSPT_BUCKETS);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to load fishing timing for {}", serverAddress, e);
+        }
+        return model;
+    }
+
+    /**
+     * Saves the model if any catches have been added since it was loaded or last saved
+     */
+    public void save() {
+        Path file = getFile(serverAddress);
+        if (file == null || !dirty) {
+            return;
+        }
+        dirty = false;
+
+        NbtCompound rootTag = new NbtCompound();
+        rootTag.putDouble("Mu", mu);
+        rootTag.putDouble("Sigma", sigma);
+        rootTag.putDouble("PacketLossRate", packetLossRate);
+        rootTag.putDouble("SampleWeight", sampleWeight);
+        rootTag.putDouble("MassSum", massSum);
+        rootTag.putDouble("WeightedSum", weightedSum);
+        rootTag.putDouble("WeightedSquareSum", weightedSquareSum);
+        rootTag.putInt("CorrectCatches", correctCatches);
+        rootTag.putInt("WrongCatches", wrongCatches);
+        rootTag.putInt("UnmatchedCatches", unmatchedCatches);
+        rootTag.putIntArray("OffsetCounts", offsetCounts);
+        rootTag.putIntArray("MsptCounts", msptCounts);
+
+        try {
+            Path dir = file.getParent();
+            Files.createDirectories(dir);
+            Path newFile = File.createTempFile("fishing", ".dat", dir.toFile()).toPath();
+            NbtIo.write(rootTag, newFile);
+            Util.backupAndReplace(file, newFile, dir.resolve(file.getFileName() + "_old"));
+        } catch (IOException e) {
+            LOGGER.error("Failed to save fishing timing for {}", serverAddress, e);
+        }
+    }
+}
@@ -0,0 +1,465 @@
+package net.earthcomputer.clientcommands.features;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.ShapeContext;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.entity.Entity;
+import net.minecraft.fluid.FluidState;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.registry.tag.FluidTags;
+import net.minecraft.util.function.BooleanBiFunction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Direction;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.shape.VoxelShape;
+import net.minecraft.util.shape.VoxelShapes;
+import net.minecraft.world.BlockView;
+import net.minecraft.world.World;
+import net.minecraft.world.biome.Biome;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * An immutable copy of the part of the world that a fishing bobber can reach, so that the bobber can be simulated
+ * without touching the client world. Block states are stored as indices into a local palette, and collision shapes are
+ * cached per palette entry wherever they don't depend on the position or the entity.
+ */
+class FishingWorldSnapshot implements BlockView {
+    private static final double BOBBER_DRAG = 0.92;
+    // fish travel particles look for water up to 8 blocks away, and the open water check looks 2 blocks away
+    private static final int FISHING_RADIUS = 10;
+    private static final int MAX_FALL_DISTANCE = 32;
+
+    private final int bottomY;
+    private final int height;
+
+    private final int minX;
+    private final int minY;
+    private final int minZ;
+    private final int sizeX;
+    private final int sizeY;
+    private final int sizeZ;
+
+    private final BlockState[] palette;
+    private final short[] states;
+    private final boolean[] loadedColumns;
+    // null where the collision shape depends on the position or the entity
+    private final VoxelShape[] collisionShapes;
+
+    private final BitSet skyVisible;
+    private final BitSet raining;
+    // biomes are 3D, so they are sampled where the bobber can catch fish, i.e. at the top of each body of water
+    private final Int2ObjectMap<com.seedfinding.mcbiome.biome.Biome> surfaceBiomes;
+    // for anywhere else, the biome at the topmost water in the column
+    private final com.seedfinding.mcbiome.biome.Biome[] columnBiomes;
+
+    private final VoxelShape worldBorderShape;
+    private final List<VoxelShape> entityCollisions;
+    private final List<Box> hittableEntityBoxes;
+
+    FishingWorldSnapshot(
+        int bottomY,
+        int height,
+        int minX,
+        int minY,
+        int minZ,
+        int sizeX,
+        int sizeY,
+        int sizeZ,
+        BlockState[] palette,
+        short[] states,
+        boolean[] loadedColumns,
+        BitSet skyVisible,
+        BitSet raining,
+        Int2ObjectMap<com.seedfinding.mcbiome.biome.Biome> surfaceBiomes,
+        com.seedfinding.mcbiome.biome.Biome[] columnBiomes,
+        VoxelShape worldBorderShape,
+        List<VoxelShape> entityCollisions,
+        List<Box> hittableEntityBoxes
+    ) {
+        this.bottomY = bottomY;
+        this.height = height;
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.palette = palette;
+        this.states = states;
+        this.loadedColumns = loadedColumns;
+        this.skyVisible = skyVisible;
+        this.raining = raining;
+        this.surfaceBiomes = surfaceBiomes;
+        this.columnBiomes = columnBiomes;
+        this.worldBorderShape = worldBorderShape;
+        this.entityCollisions = entityCollisions;
+        this.hittableEntityBoxes = hittableEntityBoxes;
+
+        this.collisionShapes = new VoxelShape[palette.length];
+        for (int i = 0; i < palette.length; i++) {
+            BlockState state = palette[i];
+            if (!state.getBlock().hasDynamicBounds() && !state.isOf(Blocks.SCAFFOLDING) && !state.isOf(Blocks.POWDER_SNOW)) {
+                collisionShapes[i] = state.getCollisionShape(this, BlockPos.ORIGIN, ShapeContext.absent());
+            }
+        }
+    }
+
+    /**
+     * Copies the blocks around a freshly thrown fishing bobber. Must be called on the client thread.
+     */
+    static FishingWorldSnapshot capture(World world, Entity bobber, Vec3d pos, Vec3d velocity, Predicate<Entity> canHit) {
+        // the bobber slows down geometrically, so this is as far as it can fly before it lands
+        int horizontalRadius = MathHelper.ceil(velocity.horizontalLength() / (1 - BOBBER_DRAG)) + FISHING_RADIUS;
+        int upDistance = MathHelper.ceil(Math.max(0, velocity.y) / (1 - BOBBER_DRAG)) + FISHING_RADIUS;
+
+        int minX = MathHelper.floor(pos.x) - horizontalRadius;
+        int minZ = MathHelper.floor(pos.z) - horizontalRadius;
+        int minY = Math.max(world.getBottomY(), MathHelper.floor(pos.y) - MAX_FALL_DISTANCE);
+        int maxY = Math.min(world.getTopY() - 1, MathHelper.floor(pos.y) + upDistance);
+        int sizeX = horizontalRadius * 2 + 1;
+        int sizeZ = horizontalRadius * 2 + 1;
+        int sizeY = Math.max(0, maxY - minY + 1);
+
+        Object2IntMap<BlockState> paletteIndices = new Object2IntOpenHashMap<>();
+        paletteIndices.defaultReturnValue(-1);
+        List<BlockState> palette = new ArrayList<>();
+        palette.add(Blocks.VOID_AIR.getDefaultState());
+        paletteIndices.put(Blocks.VOID_AIR.getDefaultState(), 0);
+
+        short[] states = new short[sizeX * sizeY * sizeZ];
+        boolean[] loadedColumns = new boolean[sizeX * sizeZ];
+        BitSet skyVisible = new BitSet(states.length);
+        BitSet raining = new BitSet(states.length);
+        Int2ObjectMap<com.seedfinding.mcbiome.biome.Biome> surfaceBiomes = new Int2ObjectOpenHashMap<>();
+        var columnBiomes = new com.seedfinding.mcbiome.biome.Biome[sizeX * sizeZ];
+        Map<RegistryEntry<Biome>, Optional<com.seedfinding.mcbiome.biome.Biome>> biomeCache = new HashMap<>();
+        Function<BlockPos, com.seedfinding.mcbiome.biome.Biome> getBiome = biomePos -> biomeCache.computeIfAbsent(world.getBiome(biomePos), k -> Optional.ofNullable(SeedfindingUtil.toSeedfindingBiome(world, k))).orElse(null);
+
+        BlockPos.Mutable mutable = new BlockPos.Mutable();
+        for (int z = 0; z < sizeZ; z++) {
+            for (int x = 0; x < sizeX; x++) {
+                Chunk chunk = world.getChunk((minX + x) >> 4, (minZ + z) >> 4, ChunkStatus.FULL, false);
+                if (chunk == null) {
+                    continue;
+                }
+                loadedColumns[z * sizeX + x] = true;
+
+                int surfaceY = MathHelper.floor(pos.y);
+                boolean wasWaterBelow = false;
+                for (int y = 0; y < sizeY; y++) {
+                    mutable.set(minX + x, minY + y, minZ + z);
+                    BlockState state = chunk.getBlockState(mutable);
+                    int paletteIndex = paletteIndices.getInt(state);
+                    if (paletteIndex == -1) {
+                        paletteIndex = palette.size();
+                        palette.add(state);
+                        paletteIndices.put(state, paletteIndex);
+                    }
+                    int index = (y * sizeZ + z) * sizeX + x;
+                    states[index] = (short) paletteIndex;
+
+                    // the bobber only checks for sky and rain directly above the water it's floating in
+                    if (wasWaterBelow) {
+                        if (world.isSkyVisible(mutable)) {
+                            skyVisible.set(index);
+                        }
+                        if (world.hasRain(mutable)) {
+                            raining.set(index);
+                        }
+                    }
+                    boolean isWater = state.getFluidState().isIn(FluidTags.WATER);
+                    if (wasWaterBelow && !isWater) {
+                        int belowIndex = index - sizeZ * sizeX;
+                        surfaceBiomes.put(index, getBiome.apply(mutable));
+                        surfaceBiomes.put(belowIndex, getBiome.apply(mutable.set(minX + x, minY + y - 1, minZ + z)));
+                    }
+                    wasWaterBelow = isWater;
+                    if (wasWaterBelow) {
+                        surfaceY = minY + y;
+                    }
+                }
+                if (wasWaterBelow && sizeY > 0) {
+                    int topIndex = ((sizeY - 1) * sizeZ + z) * sizeX + x;
+                    surfaceBiomes.put(topIndex, getBiome.apply(mutable.set(minX + x, minY + sizeY - 1, minZ + z)));
+                }
+
+                columnBiomes[z * sizeX + x] = getBiome.apply(mutable.set(minX + x, surfaceY, minZ + z));
+            }
+        }
+
+        Box area = new Box(minX, minY, minZ, minX + sizeX, minY + sizeY, minZ + sizeZ);
+        return new FishingWorldSnapshot(
+            world.getBottomY(),
+            world.getHeight(),
+            minX,
+            minY,
+            minZ,
+            sizeX,
+            sizeY,
+            sizeZ,
+            palette.toArray(BlockState[]::new),
+            states,
+            loadedColumns,
+            skyVisible,
+            raining,
+            surfaceBiomes,
+            columnBiomes,
+            world.getWorldBorder().asVoxelShape(),
+            List.copyOf(world.getEntityCollisions(bobber, area)),
+            world.getOtherEntities(bobber, area, canHit).stream().map(Entity::getBoundingBox).toList()
+        );
+    }
+
+    private int getIndex(int x, int y, int z) {
+        x -= minX;
+        y -= minY;
+        z -= minZ;
+        if (x < 0 || y < 0 || z < 0 || x >= sizeX || y >= sizeY || z >= sizeZ) {
+            return -1;
+        }
+        return (y * sizeZ + z) * sizeX + x;
+    }
+
+    private int getColumnIndex(int x, int z) {
+        x -= minX;
+        z -= minZ;
+        if (x < 0 || z < 0 || x >= sizeX || z >= sizeZ) {
+            return -1;
+        }
+        return z * sizeX + x;
+    }
+
+    /**
+     * Whether the bobber can still be simulated at this position, i.e. everything the fishing logic looks at around it
+     * is part of the snapshot.
+     */
+    public boolean isInSimulationRange(BlockPos pos) {
+        return pos.getX() >= minX + FISHING_RADIUS && pos.getX() < minX + sizeX - FISHING_RADIUS
+            && pos.getZ() >= minZ + FISHING_RADIUS && pos.getZ() < minZ + sizeZ - FISHING_RADIUS
+            && (pos.getY() > minY || minY == bottomY)
+            && (pos.getY() + 2 < minY + sizeY || minY + sizeY == bottomY + height);
+    }
+
+    @Nullable
+    @Override
+    public BlockEntity getBlockEntity(BlockPos pos) {
+        return null;
+    }
+
+    @Override
+    public BlockState getBlockState(BlockPos pos) {
+        return getBlockState(pos.getX(), pos.getY(), pos.getZ());
+    }
+
+    public BlockState getBlockState(int x, int y, int z) {
+        int index = getIndex(x, y, z);
+        return index == -1 ? Blocks.VOID_AIR.getDefaultState() : palette[states[index]];
+    }
+
+    @Override
+    public FluidState getFluidState(BlockPos pos) {
+        return getBlockState(pos).getFluidState();
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public int getBottomY() {
+        return bottomY;
+    }
+
+    public boolean isRegionLoaded(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+        if (maxY < bottomY || minY >= bottomY + height) {
+            return false;
+        }
+        for (int z = minZ; z <= maxZ; z++) {
+            for (int x = minX; x <= maxX; x++) {
+                int columnIndex = getColumnIndex(x, z);
+                if (columnIndex == -1 || !loadedColumns[columnIndex]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public boolean anyStateInBoxIfLoaded(Box box, Predicate<BlockState> predicate) {
+        int minX = MathHelper.floor(box.minX);
+        int maxX = MathHelper.floor(box.maxX);
+        int minY = MathHelper.floor(box.minY);
+        int maxY = MathHelper.floor(box.maxY);
+        int minZ = MathHelper.floor(box.minZ);
+        int maxZ = MathHelper.floor(box.maxZ);
+        if (!isRegionLoaded(minX, minY, minZ, maxX, maxY, maxZ)) {
+            return false;
+        }
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    if (predicate.test(getBlockState(x, y, z))) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    public boolean isSkyVisible(BlockPos pos) {
+        int index = getIndex(pos.getX(), pos.getY(), pos.getZ());
+        return index != -1 && skyVisible.get(index);
+    }
+
+    public boolean hasRain(BlockPos pos) {
+        int index = getIndex(pos.getX(), pos.getY(), pos.getZ());
+        return index != -1 && raining.get(index);
+    }
+
+    @Nullable
+    public com.seedfinding.mcbiome.biome.Biome getSeedfindingBiome(BlockPos pos) {
+        int index = getIndex(pos.getX(), pos.getY(), pos.getZ());
+        if (index != -1 && surfaceBiomes.containsKey(index)) {
+            return surfaceBiomes.get(index);
+        }
+        int columnIndex = getColumnIndex(pos.getX(), pos.getZ());
+        return columnIndex == -1 ? null : columnBiomes[columnIndex];
+    }
+
+    public VoxelShape getWorldBorderShape() {
+        return worldBorderShape;
+    }
+
+    public void collectEntityCollisions(Box box, List<VoxelShape> collisions) {
+        for (VoxelShape shape : entityCollisions) {
+            if (shape.getBoundingBox().intersects(box)) {
+                collisions.add(shape);
+            }
+        }
+    }
+
+    /**
+     * Same as the block collision iterator in vanilla
+     */
+    public void collectBlockCollisions(ShapeContext context, Box box, List<VoxelShape> collisions) {
+        int minX = MathHelper.floor(box.minX - 1.0E-7) - 1;
+        int maxX = MathHelper.floor(box.maxX + 1.0E-7) + 1;
+        int minY = MathHelper.floor(box.minY - 1.0E-7) - 1;
+        int maxY = MathHelper.floor(box.maxY + 1.0E-7) + 1;
+        int minZ = MathHelper.floor(box.minZ - 1.0E-7) - 1;
+        int maxZ = MathHelper.floor(box.maxZ + 1.0E-7) + 1;
+
+        VoxelShape boxShape = null;
+        BlockPos.Mutable mutable = new BlockPos.Mutable();
+        for (int y = minY; y <= maxY; y++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int x = minX; x <= maxX; x++) {
+                    int edges = (x == minX || x == maxX ? 1 : 0) + (y == minY || y == maxY ? 1 : 0) + (z == minZ || z == maxZ ? 1 : 0);
+                    if (edges == 3) {
+                        continue;
+                    }
+                    int index = getIndex(x, y, z);
+                    if (index == -1) {
+                        continue;
+                    }
+                    int paletteIndex = states[index];
+                    BlockState state = palette[paletteIndex];
+                    if ((edges == 1 && !state.exceedsCube()) || (edges == 2 && !state.isOf(Blocks.MOVING_PISTON))) {
+                        continue;
+                    }
+
+                    VoxelShape shape = collisionShapes[paletteIndex];
+                    if (shape == null) {
+                        shape = state.getCollisionShape(this, mutable.set(x, y, z), context);
+                    }
+                    if (shape.isEmpty()) {
+                        continue;
+                    }
+                    if (shape == VoxelShapes.fullCube()) {
+                        if (box.intersects(x, y, z, x + 1, y + 1, z + 1)) {
+                            collisions.add(shape.offset(x, y, z));
+                        }
+                    } else {
+                        VoxelShape offsetShape = shape.offset(x, y, z);
+                        if (boxShape == null) {
+                            boxShape = VoxelShapes.cuboid(box);
+                        }
+                        if (VoxelShapes.matchesAnywhere(offsetShape, boxShape, BooleanBiFunction.AND)) {
+                            collisions.add(offsetShape);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    public boolean hitsEntity(Box searchBox, Vec3d start, Vec3d end) {
+        for (Box entityBox : hittableEntityBoxes) {
+            // same margin as ProjectileUtil.getEntityCollision
+            if (entityBox.intersects(searchBox) && entityBox.expand(0.3).raycast(start, end).isPresent()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Same as the private overload of {@link Entity#adjustMovementForCollisions(Entity, Vec3d, Box, World, List)}
+     */
+    public static Vec3d adjustMovementForCollisions(Vec3d movement, Box box, List<VoxelShape> collisions) {
+        if (collisions.isEmpty()) {
+            return movement;
+        }
+
+        double x = movement.x;
+        double y = movement.y;
+        double z = movement.z;
+        if (y != 0) {
+            y = VoxelShapes.calculateMaxOffset(Direction.Axis.Y, box, collisions, y);
+            if (y != 0) {
+                box = box.offset(0, y, 0);
+            }
+        }
+
+        boolean zFirst = Math.abs(x) < Math.abs(z);
+        if (zFirst && z != 0) {
+            z = VoxelShapes.calculateMaxOffset(Direction.Axis.Z, box, collisions, z);
+            if (z != 0) {
+                box = box.offset(0, 0, z);
+            }
+        }
+
+        if (x != 0) {
+            x = VoxelShapes.calculateMaxOffset(Direction.Axis.X, box, collisions, x);
+            if (!zFirst && x != 0) {
+                box = box.offset(x, 0, 0);
+            }
+        }
+
+        if (!zFirst && z != 0) {
+            z = VoxelShapes.calculateMaxOffset(Direction.Axis.Z, box, collisions, z);
+        }
+
+        return new Vec3d(x, y, z);
+    }
+}
@@ -0,0 +1,189 @@
+package net.earthcomputer.clientcommands.features;
+
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.earthcomputer.clientcommands.interfaces.ICreativeSlot;
+import net.minecraft.enchantment.EnchantmentHelper;
+import net.minecraft.enchantment.Enchantments;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.item.Items;
+import net.minecraft.screen.ScreenHandler;
+import net.minecraft.screen.slot.Slot;
+import net.minecraft.screen.slot.SlotActionType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Remembers which slot of a screen handler items should be thrown from for RNG manipulation, so that bursts of hundreds
+ * of throws don't scan the whole inventory each time. The throwable items and their total counts are kept up to date
+ * from slot update packets and item throws, and the chosen slot is checked in constant time before each throw. The
+ * preferred item is only chosen again once its slot runs out or the inventory changes in some other way.
+ */
+final class ItemThrowSlotIndex {
+    private static final Item[] NO_ITEMS = new Item[0];
+
+    @Nullable
+    private ScreenHandler handler;
+    // null where the slot has nothing that can be thrown
+    private Item[] slotItems = NO_ITEMS;
+    private int[] slotCounts = new int[0];
+    private final Object2IntMap<Item> itemCounts = new Object2IntOpenHashMap<>();
+
+    @Nullable
+    private Item bestItem;
+    private int bestSlot = -1;
+    @Nullable
+    private ItemStack bestStack;
+
+    @Nullable
+    Slot getBestSlot(ScreenHandler handler) {
+        if (handler != this.handler || handler.slots.size() != slotItems.length) {
+            rebuild(handler);
+        } else if (bestSlot != -1) {
+            // the stack is replaced whenever the server changes the slot, and emptied if it was used up locally
+            Slot slot = handler.slots.get(bestSlot);
+            if (slot.getStack() == bestStack && !bestStack.isEmpty()) {
+                return slot;
+            }
+            updateSlot(bestSlot);
+        }
+
+        if (bestSlot == -1) {
+            chooseBestSlot();
+        }
+        return bestSlot == -1 ? null : handler.slots.get(bestSlot);
+    }
+
+    void invalidate() {
+        handler = null;
+    }
+
+    /**
+     * Called after the server has set the contents of a slot
+     */
+    void onSlotUpdate(int syncId, int slotId) {
+        if (handler == null) {
+            return;
+        }
+        if (syncId != handler.syncId || slotId < 0 || slotId >= slotItems.length) {
+            // a player inventory slot, which may also be in this screen handler under a different index
+            invalidate();
+            return;
+        }
+        updateSlot(slotId);
+    }
+
+    /**
+     * Called before a slot is clicked, which the client carries out straight away
+     */
+    void onSlotClick(int syncId, int slotId, int button, SlotActionType actionType) {
+        if (handler == null) {
+            return;
+        }
+        if (syncId != handler.syncId || actionType != SlotActionType.THROW || slotId < 0 || slotId >= slotItems.length) {
+            invalidate();
+            return;
+        }
+
+        Item item = slotItems[slotId];
+        if (item == null) {
+            return;
+        }
+        // button 1 throws the whole stack
+        int thrown = button == 0 ? 1 : slotCounts[slotId];
+        slotCounts[slotId] -= thrown;
+        itemCounts.put(item, itemCounts.getInt(item) - thrown);
+        if (slotCounts[slotId] <= 0) {
+            removeSlot(slotId);
+        }
+    }
+
+    private void rebuild(ScreenHandler handler) {
+        this.handler = handler;
+        int size = handler.slots.size();
+        slotItems = new Item[size];
+        slotCounts = new int[size];
+        itemCounts.clear();
+        bestItem = null;
+        bestSlot = -1;
+        bestStack = null;
+        for (int i = 0; i < size; i++) {
+            addSlot(i);
+        }
+    }
+
+    private void updateSlot(int slotId) {
+        if (slotItems[slotId] != null) {
+            removeSlot(slotId);
+        }
+        addSlot(slotId);
+        if (bestItem != null && slotItems[slotId] != null && slotItems[slotId] != bestItem) {
+            // a different item could now be preferred
+            bestSlot = -1;
+        }
+    }
+
+    private void addSlot(int slotId) {
+        Slot slot = handler.slots.get(slotId);
+        if (!isThrowable(slot)) {
+            return;
+        }
+        ItemStack stack = slot.getStack();
+        slotItems[slotId] = stack.getItem();
+        slotCounts[slotId] = stack.getCount();
+        itemCounts.put(stack.getItem(), itemCounts.getInt(stack.getItem()) + stack.getCount());
+    }
+
+    private void removeSlot(int slotId) {
+        Item item = slotItems[slotId];
+        int count = itemCounts.getInt(item) - Math.max(0, slotCounts[slotId]);
+        if (count <= 0) {
+            itemCounts.removeInt(item);
+        } else {
+            itemCounts.put(item, count);
+        }
+        slotItems[slotId] = null;
+        slotCounts[slotId] = 0;
+        if (slotId == bestSlot) {
+            bestSlot = -1;
+        }
+    }
+
+    private void chooseBestSlot() {
+        bestItem = null;
+        bestStack = null;
+        int bestCount = 0;
+        for (Object2IntMap.Entry<Item> entry : itemCounts.object2IntEntrySet()) {
+            Item item = entry.getKey();
+            int count = entry.getIntValue();
+            if (bestItem == null || item.getMaxCount() > bestItem.getMaxCount() || (item.getMaxCount() == bestItem.getMaxCount() && count > bestCount)) {
+                bestItem = item;
+                bestCount = count;
+            }
+        }
+        if (bestItem == null) {
+            return;
+        }
+
+        bestSlot = Arrays.asList(slotItems).indexOf(bestItem);
+        bestStack = handler.slots.get(bestSlot).getStack();
+    }
+
+    private static boolean isThrowable(Slot slot) {
+        if (!slot.hasStack()) {
+            return false;
+        }
+        if (slot instanceof ICreativeSlot) {
+            return false;
+        }
+        if (EnchantmentHelper.getLevel(Enchantments.BINDING_CURSE, slot.getStack()) != 0) {
+            return false;
+        }
+        if (slot.getStack().getItem() == Items.CHORUS_FRUIT) {
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,131 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.minecraft.util.math.random.BaseRandom;
+import net.minecraft.util.math.random.CheckedRandom;
+import net.minecraft.util.math.random.Random;
+import net.minecraft.util.math.random.RandomSplitter;
+
+/**
+ * The Java LCG, producing the same numbers as {@link CheckedRandom} and {@link java.util.Random}, but keeping its state
+ * in a plain {@code long} field rather than an {@code AtomicLong}. The internal seed can be read and written directly,
+ * {@link #skip(long)} jumps ahead in logarithmic time, and {@link #copy()} forks the cursor. Not thread safe.
+ */
+public final class LcgRandom implements BaseRandom {
+    public static final long MULTIPLIER = 0x5deece66dL;
+    public static final long ADDEND = 0xbL;
+    public static final long MASK = (1L << 48) - 1;
+
+    private long seed;
+    private double nextNextGaussian;
+    private boolean haveNextNextGaussian;
+
+    /**
+     * Creates a random with the given seed, scrambled the same way as {@code new Random(seed)}
+     */
+    public LcgRandom(long seed) {
+        setSeed(seed);
+    }
+
+    public static LcgRandom ofInternalSeed(long internalSeed) {
+        LcgRandom rand = new LcgRandom(0);
+        rand.setInternalSeed(internalSeed);
+        return rand;
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        setInternalSeed(seed ^ MULTIPLIER);
+    }
+
+    public void setInternalSeed(long internalSeed) {
+        this.seed = internalSeed & MASK;
+        this.haveNextNextGaussian = false;
+    }
+
+    public long getInternalSeed() {
+        return seed;
+    }
+
+    @Override
+    public int next(int bits) {
+        seed = (seed * MULTIPLIER + ADDEND) & MASK;
+        return (int) (seed >>> (48 - bits));
+    }
+
+    @Override
+    public void skip(int count) {
+        skip((long) count);
+    }
+
+    /**
+     * Advances the random by the given number of steps, as if {@link #next(int)} was called that many times
+     */
+    public void skip(long steps) {
+        seed = (seed * getJumpMultiplier(steps) + getJumpAddend(steps)) & MASK;
+    }
+
+    @Override
+    public double nextGaussian() {
+        // same as GaussianGenerator
+        if (haveNextNextGaussian) {
+            haveNextNextGaussian = false;
+            return nextNextGaussian;
+        }
+        double v1, v2, s;
+        do {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        double multiplier = Math.sqrt(-2 * Math.log(s) / s);
+        nextNextGaussian = v2 * multiplier;
+        haveNextNextGaussian = true;
+        return v1 * multiplier;
+    }
+
+    public LcgRandom copy() {
+        LcgRandom copy = ofInternalSeed(seed);
+        copy.nextNextGaussian = nextNextGaussian;
+        copy.haveNextNextGaussian = haveNextNextGaussian;
+        return copy;
+    }
+
+    @Override
+    public Random split() {
+        return new LcgRandom(nextLong());
+    }
+
+    @Override
+    public RandomSplitter nextSplitter() {
+        return new CheckedRandom.Splitter(nextLong());
+    }
+
+    /**
+     * The multiplier of the LCG step which is the same as the given number of normal steps
+     */
+    public static long getJumpMultiplier(long steps) {
+        long multiplier = 1;
+        for (long stepMultiplier = MULTIPLIER; steps != 0; steps >>>= 1) {
+            if ((steps & 1) != 0) {
+                multiplier *= stepMultiplier;
+            }
+            stepMultiplier *= stepMultiplier;
+        }
+        return multiplier & MASK;
+    }
+
+    /**
+     * The addend of the LCG step which is the same as the given number of normal steps
+     */
+    public static long getJumpAddend(long steps) {
+        long addend = 0;
+        for (long stepMultiplier = MULTIPLIER, stepAddend = ADDEND; steps != 0; steps >>>= 1) {
+            if ((steps & 1) != 0) {
+                addend = addend * stepMultiplier + stepAddend;
+            }
+            stepAddend = stepAddend * (stepMultiplier + 1);
+            stepMultiplier *= stepMultiplier;
+        }
+        return addend & MASK;
+    }
+}
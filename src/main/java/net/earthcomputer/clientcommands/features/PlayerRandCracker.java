@@ -1,18 +1,18 @@
 package net.earthcomputer.clientcommands.features;
 
+import com.mojang.logging.LogUtils;
 import net.earthcomputer.clientcommands.MultiVersionCompat;
 import net.earthcomputer.clientcommands.Configs;
 import net.earthcomputer.clientcommands.command.ClientCommandHelper;
-import net.earthcomputer.clientcommands.interfaces.ICreativeSlot;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.enchantment.EnchantmentHelper;
 import net.minecraft.enchantment.Enchantments;
 import net.minecraft.entity.LivingEntity;
 import net.minecraft.item.ArmorItem;
-import net.minecraft.item.Item;
 import net.minecraft.item.ItemStack;
 import net.minecraft.item.Items;
+import net.minecraft.screen.ScreenHandler;
 import net.minecraft.screen.slot.Slot;
 import net.minecraft.screen.slot.SlotActionType;
 import net.minecraft.sound.SoundEvents;
@@ -20,16 +20,19 @@ import net.minecraft.text.MutableText;
 import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
 import net.minecraft.util.StringIdentifiable;
+import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.math.random.Random;
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
 
-import java.lang.reflect.Field;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Predicate;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class PlayerRandCracker {
+    private static final Logger LOGGER = LogUtils.getLogger();
 
     // ===== RNG IMPLEMENTATION ===== //
 
@@ -37,37 +40,62 @@ public class PlayerRandCracker {
     public static final long ADDEND = 0xbL;
     public static final long MASK = (1L << 48) - 1;
 
+    // an item throw advances the player RNG by 4 steps
+    private static final int STEPS_PER_THROW = 4;
+    private static final long THROW_MULTIPLIER = LcgRandom.getJumpMultiplier(STEPS_PER_THROW);
+    private static final long THROW_ADDEND = LcgRandom.getJumpAddend(STEPS_PER_THROW);
+
+    // item throw searches of at least 2 chunks are split between threads
+    private static final int LOOKAHEAD_CHUNK_SIZE = 512;
+
     private static long seed;
 
-    private static int next(int bits) {
-        seed = (seed * MULTIPLIER + ADDEND) & MASK;
-        return (int) (seed >>> (48 - bits));
+    public static void setSeed(long seed) {
+        PlayerRandCracker.seed = seed;
+        hypotheses.reset(seed);
     }
 
-    public static int nextInt() {
-        return next(32);
+    private static void skipSteps(int steps) {
+        hypotheses.advance(steps);
+        seed = hypotheses.getMostLikelySeed();
     }
 
-    public static int nextInt(int bound) {
-        if ((bound & -bound) == bound) {
-            return (int) ((bound * (long)next(31)) >> 31);
-        }
-
-        int bits, val;
-        do {
-            bits = next(31);
-            val = bits % bound;
-        } while (bits - val + (bound-1) < 0);
+    /**
+     * Consumes the XP seed for an enchantment
+     */
+    public static int nextXpSeed() {
+        hypotheses.nextXpSeed();
+        seed = hypotheses.getMostLikelySeed();
+        return hypotheses.getMostLikelyXpSeed();
+    }
 
-        return val;
+    /**
+     * The number of seeds the player RNG could be, if it has been cracked
+     */
+    public static int getHypothesisCount() {
+        return Configs.playerCrackState.knowsSeed() ? hypotheses.size() : 0;
     }
 
-    public static float nextFloat() {
-        return next(24) / (float) (1 << 24);
+    /**
+     * Returns the seed after the unbreaking checks for the given amount of damage
+     */
+    // TODO: update-sensitive: UnbreakingEnchantment.shouldPreventDamage
+    static long simulateUnbreaking(long seed, int amount, int unbreakingLevel, boolean armor) {
+        LcgRandom rand = LcgRandom.ofInternalSeed(seed);
+        for (int i = 0; i < amount; i++) {
+            if (!armor || rand.nextFloat() >= 0.6) {
+                rand.nextInt(unbreakingLevel + 1);
+            }
+        }
+        return rand.getInternalSeed();
     }
 
-    public static void setSeed(long seed) {
-        PlayerRandCracker.seed = seed;
+    /**
+     * Returns what the given seed will be after the given number of item throws, in logarithmic time
+     */
+    public static long advanceThrows(long seed, long throwCount) {
+        long steps = throwCount * STEPS_PER_THROW;
+        return (seed * LcgRandom.getJumpMultiplier(steps) + LcgRandom.getJumpAddend(steps)) & MASK;
     }
 
     public static long getSeed() {
@@ -91,6 +119,14 @@ public class PlayerRandCracker {
     // TODO: update-sensitive: call hierarchy of PlayerEntity.random and PlayerEntity.getRandom()
 
     private static int expectedThrows = 0;
+    // throws whose item entity hasn't been spawned by the server yet
+    private static int unconfirmedThrows = 0;
+    // allows for the player having moved or turned slightly since the server handled the throw
+    private static final double THROW_POSITION_TOLERANCE = 1;
+    private static final double THROW_VELOCITY_TOLERANCE = 0.03;
+    private static final ItemThrowSlotIndex itemThrowSlotIndex = new ItemThrowSlotIndex();
+
+    private static final PlayerRandHypotheses hypotheses = new PlayerRandHypotheses();
 
     public static void resetCracker() {
         Configs.playerCrackState = PlayerRandCracker.CrackState.UNCRACKED;
@@ -106,9 +142,7 @@ public class PlayerRandCracker {
 
     public static void onDropItem() {
         if (expectedThrows > 0 || canMaintainPlayerRNG()) {
-            for (int i = 0; i < 4; i++) {
-                nextInt();
-            }
+            skipSteps(4);
         } else {
             resetCracker("dropItem");
         }
@@ -117,6 +151,50 @@ public class PlayerRandCracker {
         }
     }
 
+    public static void onItemEntitySpawn(Vec3d pos, Vec3d velocity) {
+        if (unconfirmedThrows == 0) {
+            return;
+        }
+        ClientPlayerEntity player = MinecraftClient.getInstance().player;
+        if (player != null && isOwnThrow(player, pos, velocity)) {
+            unconfirmedThrows--;
+        }
+    }
+
+    /**
+     * Whether an item entity spawned where and how an item thrown by the player would, so that drops from mobs, blocks
+     * and other players aren't taken for our throws
+     */
+    // TODO: update-sensitive: PlayerEntity.dropItem
+    private static boolean isOwnThrow(ClientPlayerEntity player, Vec3d pos, Vec3d velocity) {
+        // thrown items start just below the eyes of the player
+        if (pos.squaredDistanceTo(player.getX(), player.getEyeY() - 0.3, player.getZ()) > THROW_POSITION_TOLERANCE * THROW_POSITION_TOLERANCE) {
+            return false;
+        }
+
+        // they are thrown in the look direction, plus a random horizontal offset and a random vertical offset
+        float pitchSin = MathHelper.sin(player.getPitch() * MathHelper.RADIANS_PER_DEGREE);
+        float pitchCos = MathHelper.cos(player.getPitch() * MathHelper.RADIANS_PER_DEGREE);
+        float yawSin = MathHelper.sin(player.getYaw() * MathHelper.RADIANS_PER_DEGREE);
+        float yawCos = MathHelper.cos(player.getYaw() * MathHelper.RADIANS_PER_DEGREE);
+        double offsetX = velocity.x + yawSin * pitchCos * 0.3;
+        double offsetZ = velocity.z - yawCos * pitchCos * 0.3;
+        double maxHorizontalOffset = 0.02 + THROW_VELOCITY_TOLERANCE;
+        if (offsetX * offsetX + offsetZ * offsetZ > maxHorizontalOffset * maxHorizontalOffset) {
+            return false;
+        }
+        double offsetY = velocity.y + pitchSin * 0.3 - 0.1;
+        return Math.abs(offsetY) <= 0.1 + THROW_VELOCITY_TOLERANCE;
+    }
+
+    public static int getUnconfirmedThrows() {
+        return unconfirmedThrows;
+    }
+
+    public static void clearUnconfirmedThrows() {
+        unconfirmedThrows = 0;
+    }
+
     public static void onEntityCramming() {
         resetCracker("entityCramming");
     }
@@ -131,22 +209,21 @@ public class PlayerRandCracker {
 
             if (itemUseTimeLeft < 0 && particleCount != 16) {
                 // We have accounted for all eating ticks, that on the server should be calculated
-                // Sometimes if the connection is laggy we eat more than 24 ticks so just hope for the best
+                // Sometimes if the connection is laggy we eat more than 24 ticks, it's most likely that the server
+                // didn't but keep both possibilities
+                hypotheses.forkSteps(new int[] {0, particleCount * 3 + 3}, new double[] {0.75, 0.25}, false);
+                seed = hypotheses.getMostLikelySeed();
                 return;
             }
 
             //Every time a person eats, the particles are random, and when finished more particles spawn(16)
-            for (int i = 0; i < particleCount * 3 + 3; i++) {
-                nextInt();
-            }
+            skipSteps(particleCount * 3 + 3);
 
             if (Configs.getChorusManipulation() && stack.getItem() == Items.CHORUS_FRUIT) {
                 ChorusManipulation.onEat(pos, particleCount, itemUseTimeLeft);
                 if (particleCount == 16) {
                     //Consumption randoms
-                    for (int i = 0; i < 5; i++) {
-                        nextInt();
-                    }
+                    skipSteps(5);
                 }
             }
         } else {
@@ -190,7 +267,7 @@ public class PlayerRandCracker {
 
     public static void onAnvilUse() {
         if (canMaintainPlayerRNG()) {
-            nextInt();
+            skipSteps(1);
         } else {
             resetCracker("anvil");
         }
@@ -203,7 +280,12 @@ public class PlayerRandCracker {
     public static void onXpOrb() {
         if (MultiVersionCompat.INSTANCE.getProtocolVersion() >= MultiVersionCompat.V1_17) {
             // TODO: is there a way to be smarter about this?
-            resetCracker("xp");
+            if (canMaintainPlayerRNG()) {
+                hypotheses.forkSteps(new int[] {0, 1}, new double[] {0.5, 0.5}, false);
+                seed = hypotheses.getMostLikelySeed();
+            } else {
+                resetCracker("xp");
+            }
         }
     }
 
@@ -217,7 +299,7 @@ public class PlayerRandCracker {
 
     public static void onBaneOfArthropods() {
         if (canMaintainPlayerRNG()) {
-            nextInt();
+            skipSteps(1);
         } else {
             resetCracker("baneOfArthropods");
         }
@@ -229,18 +311,38 @@ public class PlayerRandCracker {
 
     public static void onUnbreaking(ItemStack stack, int amount, int unbreakingLevel) {
         if (canMaintainPlayerRNG()) {
-            for (int i = 0; i < amount; i++) {
-                if (!(stack.getItem() instanceof ArmorItem) || nextFloat() >= 0.6) {
-                    nextInt(unbreakingLevel + 1);
-                } else {
-                    resetCracker("unbreaking");
-                }
-            }
+            hypotheses.applyUnbreaking(amount, unbreakingLevel, stack.getItem() instanceof ArmorItem);
+            seed = hypotheses.getMostLikelySeed();
         }
     }
 
     public static void onUnbreakingUncertain(ItemStack stack, int minAmount, int maxAmount, int unbreakingLevel) {
-        resetCracker("unbreaking");
+        if (canMaintainPlayerRNG()) {
+            hypotheses.forkUnbreaking(minAmount, maxAmount, unbreakingLevel, stack.getItem() instanceof ArmorItem);
+            seed = hypotheses.getMostLikelySeed();
+        } else {
+            resetCracker("unbreaking");
+        }
+    }
+
+    /**
+     * Called when the enchantment table shows bits of the XP seed. Drops the player seeds which disagree with it, and
+     * returns the XP seed of the most likely one left, or restarts the crack if there are none.
+     */
+    public static OptionalInt onXpSeedObserved(int serverXpSeedBits, int bitMask) {
+        if (!hypotheses.hasXpSeeds()) {
+            return OptionalInt.empty();
+        }
+        int oldHypotheses = hypotheses.size();
+        if (hypotheses.pruneByXpSeed(serverXpSeedBits, bitMask) == 0) {
+            resetCracker("xpSeedMismatch");
+            return OptionalInt.empty();
+        }
+        if (hypotheses.size() != oldHypotheses) {
+            LOGGER.info("Narrowed down the player seed from {} to {} hypotheses", oldHypotheses, hypotheses.size());
+        }
+        seed = hypotheses.getMostLikelySeed();
+        return OptionalInt.of(hypotheses.getMostLikelyXpSeed());
     }
 
     // TODO: update-sensitive: call hierarchy of ItemStack.damage
@@ -321,18 +423,9 @@ public class PlayerRandCracker {
         }
         Configs.playerCrackState = CrackState.CRACKED;
 
-        long seed = PlayerRandCracker.seed;
-        Random rand = new Random(seed ^ MULTIPLIER);
-
-        int itemsNeeded = 0;
-        for (; itemsNeeded <= max && !condition.test(rand); itemsNeeded++) {
-            for (int i = 0; i < 4; i++) {
-                seed = (seed * MULTIPLIER + ADDEND) & MASK;
-            }
-            rand.setSeed(seed ^ MULTIPLIER);
-        }
-        if (itemsNeeded > max) {
-            return new ThrowItemsResult(ThrowItemsResult.Type.NOT_POSSIBLE, itemsNeeded);
+        int itemsNeeded = findItemsNeeded(PlayerRandCracker.seed, condition, max);
+        if (itemsNeeded == -1) {
+            return new ThrowItemsResult(ThrowItemsResult.Type.NOT_POSSIBLE, max + 1);
         }
         for (int i = 0; i < itemsNeeded; i++) {
             if (!throwItem()) {
@@ -340,93 +433,111 @@ public class PlayerRandCracker {
             }
         }
 
-        return new ThrowItemsResult(ThrowItemsResult.Type.SUCCESS);
+        return ThrowItemsResult.success(itemsNeeded);
+    }
+
+    /**
+     * Returns the smallest number of item throws, up to {@code max}, after which the condition holds, or -1 if there
+     * is none. Large searches are split into chunks which are searched in parallel on the common fork-join pool, so the
+     * condition must not have side effects or read the client world. Anything it needs from the world should be
+     * captured on the client thread first, like {@link ChorusLandingSnapshot}.
+     */
+    public static int findItemsNeeded(long seed, Predicate<Random> condition, int max) {
+        int numChunks = max / LOOKAHEAD_CHUNK_SIZE + 1;
+        if (numChunks < 2) {
+            return searchItemsNeeded(seed, condition, 0, max + 1, null);
+        }
+
+        AtomicInteger result = new AtomicInteger(Integer.MAX_VALUE);
+        IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+            int start = chunk * LOOKAHEAD_CHUNK_SIZE;
+            if (start >= result.get()) {
+                return;
+            }
+            int end = (int) Math.min(max + 1L, start + LOOKAHEAD_CHUNK_SIZE);
+            int itemsNeeded = searchItemsNeeded(advanceThrows(seed, start), condition, start, end, result);
+            if (itemsNeeded != -1) {
+                result.accumulateAndGet(itemsNeeded, Math::min);
+            }
+        });
+        return result.get() == Integer.MAX_VALUE ? -1 : result.get();
+    }
+
+    private static int searchItemsNeeded(long seed, Predicate<Random> condition, int start, int end, @Nullable AtomicInteger result) {
+        LcgRandom rand = LcgRandom.ofInternalSeed(seed);
+        for (int itemsNeeded = start; itemsNeeded < end; itemsNeeded++) {
+            // give up once another chunk has found an earlier result
+            if (result != null && (itemsNeeded & 63) == 0 && itemsNeeded > result.get()) {
+                return -1;
+            }
+            if (condition.test(rand)) {
+                return itemsNeeded;
+            }
+            seed = (seed * THROW_MULTIPLIER + THROW_ADDEND) & MASK;
+            rand.setInternalSeed(seed);
+        }
+        return -1;
     }
 
     public static boolean throwItem() {
         ClientPlayerEntity player = MinecraftClient.getInstance().player;
 
-        Slot matchingSlot = getBestItemThrowSlot(player.currentScreenHandler.slots);
+        Slot matchingSlot = getBestItemThrowSlot(player.currentScreenHandler);
         if (matchingSlot == null) {
             return false;
         }
         expectedThrows++;
+        unconfirmedThrows++;
         MinecraftClient.getInstance().interactionManager.clickSlot(player.currentScreenHandler.syncId,
                 matchingSlot.id, 0, SlotActionType.THROW, player);
 
         return true;
     }
 
-    public static Slot getBestItemThrowSlot(List<Slot> slots) {
-        slots = slots.stream().filter(slot -> {
-            if (!slot.hasStack()) {
-                return false;
-            }
-            if (slot instanceof ICreativeSlot) {
-                return false;
-            }
-            if (EnchantmentHelper.getLevel(Enchantments.BINDING_CURSE, slot.getStack()) != 0) {
-                return false;
-            }
-            if (slot.getStack().getItem() == Items.CHORUS_FRUIT) {
-                return false;
-            }
-            return true;
-        }).collect(Collectors.toList());
+    @Nullable
+    public static Slot getBestItemThrowSlot(ScreenHandler handler) {
+        return itemThrowSlotIndex.getBestSlot(handler);
+    }
 
-        Map<Item, Integer> itemCounts = new HashMap<>();
-        for (Slot slot : slots) {
-            itemCounts.put(slot.getStack().getItem(), itemCounts.getOrDefault(slot.getStack().getItem(), 0) + slot.getStack().getCount());
-        }
-        if (itemCounts.isEmpty()) {
-            return null;
-        }
-        //noinspection OptionalGetWithoutIsPresent
-        Item preferredItem = itemCounts.keySet().stream().max(Comparator.comparingInt(Item::getMaxCount).thenComparing(itemCounts::get)).get();
-        //noinspection OptionalGetWithoutIsPresent
-        return slots.stream().filter(slot -> slot.getStack().getItem() == preferredItem).findFirst().get();
+    public static void onSlotUpdate(int syncId, int slotId) {
+        itemThrowSlotIndex.onSlotUpdate(syncId, slotId);
     }
 
-    private static final Field RANDOM_SEED;
-    static {
-        Field randomSeedField;
-        try {
-            randomSeedField = Random.class.getDeclaredField("seed");
-        } catch (NoSuchFieldException e) {
-            throw new AssertionError(e);
-        }
-        try {
-            randomSeedField.setAccessible(true);
-        } catch (Exception e) {
-            // Java 14+ can't access private fields in these classes
-            randomSeedField = null;
-        }
-        RANDOM_SEED = randomSeedField;
+    public static void onInventoryContents() {
+        itemThrowSlotIndex.invalidate();
     }
-    public static OptionalLong getSeed(Random rand) {
-        if (RANDOM_SEED == null) {
-            return OptionalLong.empty();
-        }
-        try {
-            return OptionalLong.of(((AtomicLong) RANDOM_SEED.get(rand)).get());
-        } catch (ReflectiveOperationException e) {
-            throw new AssertionError(e);
-        }
+
+    public static void onSlotClick(int syncId, int slotId, int button, SlotActionType actionType) {
+        itemThrowSlotIndex.onSlotClick(syncId, slotId, button, actionType);
     }
 
     public static class ThrowItemsResult {
         private final Type type;
         private final MutableText message;
+        private int itemsThrown;
 
         public ThrowItemsResult(Type type, Object... args) {
             this.type = type;
             this.message = Text.translatable(type.getTranslationKey(), args);
         }
 
+        public static ThrowItemsResult success(int itemsThrown) {
+            ThrowItemsResult result = new ThrowItemsResult(Type.SUCCESS);
+            result.itemsThrown = itemsThrown;
+            return result;
+        }
+
         public Type getType() {
             return type;
         }
 
+        /**
+         * The number of items thrown, if successful
+         */
+        public int getItemsThrown() {
+            return itemsThrown;
+        }
+
         public MutableText getMessage() {
             return message;
         }
@@ -0,0 +1,214 @@
+package net.earthcomputer.clientcommands.features;
+
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import it.unimi.dsi.fastutil.ints.IntComparator;
+
+/**
+ * The possible player RNG seeds, each with a weight. Events whose effect on the RNG is uncertain fork every hypothesis
+ * into one per outcome, rather than restarting the crack, and the XP seed shown by the enchantment table drops the
+ * hypotheses which disagree with it. Forks which end up in the same state are merged, adding up their weights, and the
+ * least likely hypotheses are dropped when there would still be too many. Everything is kept in primitive arrays which
+ * are reused between forks.
+ */
+final class PlayerRandHypotheses {
+    static final int MAX_HYPOTHESES = 256;
+    private static final double MIN_WEIGHT = 1e-4;
+
+    private final long[] seeds = new long[MAX_HYPOTHESES];
+    private final double[] weights = new double[MAX_HYPOTHESES];
+    // the XP seed of the last enchantment or level up, if any
+    private final int[] xpSeeds = new int[MAX_HYPOTHESES];
+    private boolean hasXpSeeds;
+    private int size;
+    private int mostLikely;
+
+    // the hypotheses produced by a fork, before they are merged
+    private long[] forkSeeds = new long[0];
+    private double[] forkWeights = new double[0];
+    private int[] forkXpSeeds = new int[0];
+    private int[] forkOrder = new int[0];
+    private final IntComparator byState = (a, b) -> {
+        int cmp = Long.compare(forkSeeds[a], forkSeeds[b]);
+        return cmp != 0 ? cmp : Integer.compare(forkXpSeeds[a], forkXpSeeds[b]);
+    };
+    private final IntComparator byWeightDescending = (a, b) -> {
+        int cmp = Double.compare(forkWeights[b], forkWeights[a]);
+        return cmp != 0 ? cmp : byState.compare(a, b);
+    };
+
+    PlayerRandHypotheses() {
+        reset(0);
+    }
+
+    void reset(long seed) {
+        seeds[0] = seed;
+        weights[0] = 1;
+        size = 1;
+        mostLikely = 0;
+        hasXpSeeds = false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getMostLikelySeed() {
+        return seeds[mostLikely];
+    }
+
+    boolean hasXpSeeds() {
+        return hasXpSeeds;
+    }
+
+    int getMostLikelyXpSeed() {
+        return xpSeeds[mostLikely];
+    }
+
+    void advance(int steps) {
+        long multiplier = LcgRandom.getJumpMultiplier(steps);
+        long addend = LcgRandom.getJumpAddend(steps);
+        for (int i = 0; i < size; i++) {
+            seeds[i] = (seeds[i] * multiplier + addend) & LcgRandom.MASK;
+        }
+    }
+
+    void nextXpSeed() {
+        for (int i = 0; i < size; i++) {
+            seeds[i] = (seeds[i] * LcgRandom.MULTIPLIER + LcgRandom.ADDEND) & LcgRandom.MASK;
+            xpSeeds[i] = (int) (seeds[i] >>> 16);
+        }
+        hasXpSeeds = true;
+    }
+
+    void applyUnbreaking(int amount, int unbreakingLevel, boolean armor) {
+        for (int i = 0; i < size; i++) {
+            seeds[i] = PlayerRandCracker.simulateUnbreaking(seeds[i], amount, unbreakingLevel, armor);
+        }
+    }
+
+    /**
+     * Forks each hypothesis into one for each number of steps the RNG may have been advanced by. If
+     * {@code xpSeedOnStep} is set, outcomes which advance the RNG take the XP seed from the last step.
+     */
+    void forkSteps(int[] stepOptions, double[] optionWeights, boolean xpSeedOnStep) {
+        int forkSize = size * stepOptions.length;
+        ensureForkCapacity(forkSize);
+        for (int i = 0; i < size; i++) {
+            for (int option = 0; option < stepOptions.length; option++) {
+                int index = i * stepOptions.length + option;
+                int steps = stepOptions[option];
+                forkSeeds[index] = (seeds[i] * LcgRandom.getJumpMultiplier(steps) + LcgRandom.getJumpAddend(steps)) & LcgRandom.MASK;
+                forkWeights[index] = weights[i] * optionWeights[option];
+                forkXpSeeds[index] = xpSeedOnStep && steps != 0 ? (int) (forkSeeds[index] >>> 16) : xpSeeds[i];
+            }
+        }
+        hasXpSeeds |= xpSeedOnStep;
+        replaceWithForks(forkSize);
+    }
+
+    /**
+     * Forks each hypothesis into one for each amount of damage an item with unbreaking may have taken, all equally
+     * likely
+     */
+    void forkUnbreaking(int minAmount, int maxAmount, int unbreakingLevel, boolean armor) {
+        int numOptions = maxAmount - minAmount + 1;
+        int forkSize = size * numOptions;
+        ensureForkCapacity(forkSize);
+        for (int i = 0; i < size; i++) {
+            for (int option = 0; option < numOptions; option++) {
+                int index = i * numOptions + option;
+                forkSeeds[index] = PlayerRandCracker.simulateUnbreaking(seeds[i], minAmount + option, unbreakingLevel, armor);
+                forkWeights[index] = weights[i] / numOptions;
+                forkXpSeeds[index] = xpSeeds[i];
+            }
+        }
+        replaceWithForks(forkSize);
+    }
+
+    /**
+     * Drops the hypotheses whose XP seed doesn't match the bits the server reported, and returns how many are left
+     */
+    int pruneByXpSeed(int serverXpSeedBits, int bitMask) {
+        if (!hasXpSeeds) {
+            return size;
+        }
+        int newSize = 0;
+        for (int i = 0; i < size; i++) {
+            if (((xpSeeds[i] ^ serverXpSeedBits) & bitMask) == 0) {
+                seeds[newSize] = seeds[i];
+                weights[newSize] = weights[i];
+                xpSeeds[newSize] = xpSeeds[i];
+                newSize++;
+            }
+        }
+        size = newSize;
+        normalize();
+        return size;
+    }
+
+    private void ensureForkCapacity(int capacity) {
+        if (forkSeeds.length < capacity) {
+            forkSeeds = new long[capacity];
+            forkWeights = new double[capacity];
+            forkXpSeeds = new int[capacity];
+            forkOrder = new int[capacity];
+        }
+    }
+
+    private void replaceWithForks(int forkSize) {
+        int[] order = forkOrder;
+        for (int i = 0; i < forkSize; i++) {
+            order[i] = i;
+        }
+
+        // merge forks with the same seed and XP seed, so that a state reached in several ways gets their total weight
+        IntArrays.quickSort(order, 0, forkSize, byState);
+        int mergedSize = 0;
+        for (int i = 0; i < forkSize; i++) {
+            int index = order[i];
+            if (mergedSize != 0 && byState.compare(order[mergedSize - 1], index) == 0) {
+                forkWeights[order[mergedSize - 1]] += forkWeights[index];
+            } else {
+                order[mergedSize++] = index;
+            }
+        }
+
+        if (mergedSize > MAX_HYPOTHESES) {
+            IntArrays.quickSort(order, 0, mergedSize, byWeightDescending);
+            mergedSize = MAX_HYPOTHESES;
+        }
+        for (int i = 0; i < mergedSize; i++) {
+            int index = order[i];
+            seeds[i] = forkSeeds[index];
+            weights[i] = forkWeights[index];
+            xpSeeds[i] = forkXpSeeds[index];
+        }
+        size = mergedSize;
+        normalize();
+    }
+
+    private void normalize() {
+        double totalWeight = 0;
+        for (int i = 0; i < size; i++) {
+            totalWeight += weights[i];
+        }
+        int newSize = 0;
+        for (int i = 0; i < size; i++) {
+            double weight = weights[i] / totalWeight;
+            if (weight >= MIN_WEIGHT) {
+                seeds[newSize] = seeds[i];
+                weights[newSize] = weight;
+                xpSeeds[newSize] = xpSeeds[i];
+                newSize++;
+            }
+        }
+        size = newSize;
+
+        mostLikely = 0;
+        for (int i = 1; i < size; i++) {
+            if (weights[i] > weights[mostLikely]) {
+                mostLikely = i;
+            }
+        }
+    }
+}
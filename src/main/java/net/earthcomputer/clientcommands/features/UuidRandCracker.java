@@ -0,0 +1,69 @@
+package net.earthcomputer.clientcommands.features;
+
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Recovers the RNG state of an entity from its UUID, when the UUID was generated by
+ * {@link net.minecraft.util.math.MathHelper#randomUuid(net.minecraft.util.math.random.Random)} from a
+ * {@link net.minecraft.util.math.random.CheckedRandom}. The UUID is made of two {@code nextLong()} calls, the second of
+ * which is only missing its top two bits, so the internal seed can be reconstructed from at most four candidates.
+ *
+ * <p>Runs without allocating: the LCG steps are done inline rather than through a {@code Random}.</p>
+ */
+public final class UuidRandCracker {
+    public static final long NO_SEED = -1;
+
+    private static final long MULTIPLIER = 0x5deece66dL;
+    private static final long ADDEND = 0xbL;
+    private static final long INVERSE_MULTIPLIER = 0xdfe05bcb1365L;
+    private static final long MASK = (1L << 48) - 1;
+
+    private UuidRandCracker() {
+    }
+
+    /**
+     * Returns the internal seed of the random before it generated the UUID, such that
+     * {@code Random.create(seed ^ 0x5deece66dL)} generates the same UUID, or empty if the UUID can't have been
+     * generated this way
+     */
+    public static OptionalLong getSeed(UUID uuid) {
+        long seed = getSeed(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        return seed == NO_SEED ? OptionalLong.empty() : OptionalLong.of(seed);
+    }
+
+    /**
+     * Same as {@link #getSeed(UUID)}, but returns {@link #NO_SEED} rather than allocating an {@link OptionalLong}
+     */
+    public static long getSeed(long mostSigBits, long leastSigBits) {
+        // the second nextLong() with its top two bits replaced by the UUID variant
+        long knownBits = leastSigBits & ~(3L << 62);
+
+        for (long hi = 0; hi < 4; hi++) {
+            long nextLong = (hi << 62) | knownBits;
+            // nextLong() adds the second int signed, which borrows one from the first int when it's negative
+            long upperBits = ((nextLong >>> 32) + ((nextLong >>> 31) & 1)) & 0xffffffffL;
+            long lowerBits = nextLong & 0xffffffffL;
+
+            // the third state of the random is the one whose upper 32 bits are upperBits, and which steps to a state
+            // whose upper 32 bits are lowerBits. Solve for its lower 16 bits with a reduced lattice basis.
+            long a = (24667315L * upperBits + 18218081L * lowerBits + 67552711L) >> 32;
+            long b = (-4824621L * upperBits + 7847617L * lowerBits + 7847617L) >> 32;
+            long seed3 = (7847617L * a - 18218081L * b) & MASK;
+            long seed4 = (seed3 * MULTIPLIER + ADDEND) & MASK;
+            if (seed3 >>> 16 != upperBits || seed4 >>> 16 != lowerBits) {
+                continue;
+            }
+
+            // step back to the first nextLong() and check it produces the other half of the UUID
+            long seed2 = ((seed3 - ADDEND) * INVERSE_MULTIPLIER) & MASK;
+            long seed1 = ((seed2 - ADDEND) * INVERSE_MULTIPLIER) & MASK;
+            long firstLong = ((long) (int) (seed1 >>> 16) << 32) + (int) (seed2 >>> 16);
+            if ((firstLong & -61441L | 16384L) == mostSigBits) {
+                return ((seed1 - ADDEND) * INVERSE_MULTIPLIER) & MASK;
+            }
+        }
+
+        return NO_SEED;
+    }
+}
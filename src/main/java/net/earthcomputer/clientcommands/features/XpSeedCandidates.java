@@ -0,0 +1,185 @@
+package net.earthcomputer.clientcommands.features;
+
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.nbt.NbtElement;
+import net.minecraft.util.math.random.Random;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.stream.IntStream;
+
+/**
+ * The XP seeds which could be the current one. The enchanting table reveals bits 4-15 of the XP seed, so the candidates
+ * are stored as those known bits together with a bitmap over the other 20 bits, which takes 128KB however many
+ * candidates there are. Filtering splits the bitmap into chunks which are checked in parallel on the common fork-join
+ * pool, each with its own {@link LcgRandom}, and clears the bits of the seeds which fail. Not thread safe, only the
+ * filter itself is called from other threads.
+ */
+final class XpSeedCandidates {
+    private static final int KNOWN_BITS_MASK = 0x0000fff0;
+    private static final int UNKNOWN_BITS = 20;
+    private static final int NUM_WORDS = (1 << UNKNOWN_BITS) / Long.SIZE;
+    // filters of more than one chunk of candidates are split between threads
+    private static final int CHUNK_WORDS = 256;
+    // up to this many candidates are saved as a list rather than the whole bitmap
+    private static final int MAX_SAVED_SEED_LIST = 4096;
+
+    private final long[] bitmap = new long[NUM_WORDS];
+    private int knownBits;
+    private int size;
+    private int version;
+
+    private static int toIndex(int xpSeed) {
+        return (xpSeed >>> 16) << 4 | (xpSeed & 0xf);
+    }
+
+    private int toXpSeed(int index) {
+        return (index >>> 4) << 16 | knownBits | (index & 0xf);
+    }
+
+    /**
+     * Changes whenever the candidates might have changed, so that things derived from them can be cached
+     */
+    int getVersion() {
+        return version;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int getFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        int word = 0;
+        while (bitmap[word] == 0) {
+            word++;
+        }
+        return toXpSeed(word * Long.SIZE + Long.numberOfTrailingZeros(bitmap[word]));
+    }
+
+    void clear() {
+        if (size != 0) {
+            Arrays.fill(bitmap, 0);
+            size = 0;
+            version++;
+        }
+    }
+
+    void set(int xpSeed) {
+        clear();
+        knownBits = xpSeed & KNOWN_BITS_MASK;
+        int index = toIndex(xpSeed);
+        bitmap[index / Long.SIZE] = 1L << index;
+        size = 1;
+        version++;
+    }
+
+    /**
+     * Sets the candidates to every XP seed whose bits 4-15 match the seed reported by the enchanting table
+     */
+    void setAllMatchingReported(int serverReportedXPSeed) {
+        knownBits = serverReportedXPSeed & KNOWN_BITS_MASK;
+        Arrays.fill(bitmap, -1L);
+        size = 1 << UNKNOWN_BITS;
+        version++;
+    }
+
+    NbtCompound toNbt() {
+        NbtCompound tag = new NbtCompound();
+        tag.putInt("KnownBits", knownBits);
+        if (size > MAX_SAVED_SEED_LIST) {
+            tag.putLongArray("Bitmap", bitmap);
+            return tag;
+        }
+
+        int[] xpSeeds = new int[size];
+        int i = 0;
+        for (int wordIndex = 0; wordIndex < NUM_WORDS; wordIndex++) {
+            for (long remaining = bitmap[wordIndex]; remaining != 0; remaining &= remaining - 1) {
+                xpSeeds[i++] = toXpSeed(wordIndex * Long.SIZE + Long.numberOfTrailingZeros(remaining));
+            }
+        }
+        tag.putIntArray("Seeds", xpSeeds);
+        return tag;
+    }
+
+    void fromNbt(NbtCompound tag) {
+        clear();
+        version++;
+        knownBits = tag.getInt("KnownBits") & KNOWN_BITS_MASK;
+        if (tag.contains("Bitmap", NbtElement.LONG_ARRAY_TYPE)) {
+            long[] savedBitmap = tag.getLongArray("Bitmap");
+            if (savedBitmap.length == NUM_WORDS) {
+                System.arraycopy(savedBitmap, 0, bitmap, 0, NUM_WORDS);
+                for (long word : bitmap) {
+                    size += Long.bitCount(word);
+                }
+            }
+            return;
+        }
+
+        for (int xpSeed : tag.getIntArray("Seeds")) {
+            if ((xpSeed & KNOWN_BITS_MASK) == knownBits) {
+                int index = toIndex(xpSeed);
+                long bit = 1L << index;
+                if ((bitmap[index / Long.SIZE] & bit) == 0) {
+                    bitmap[index / Long.SIZE] |= bit;
+                    size++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the XP seeds which don't pass the filter. The random passed to the filter belongs to the calling thread,
+     * so the filter can reseed it freely but must not have other side effects.
+     */
+    void filter(Filter filter) {
+        version++;
+        if (size <= CHUNK_WORDS * Long.SIZE) {
+            size = filterWords(filter, 0, NUM_WORDS);
+            return;
+        }
+
+        int numChunks = NUM_WORDS / CHUNK_WORDS;
+        int[] keptCounts = new int[numChunks];
+        IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+            int startWord = chunk * CHUNK_WORDS;
+            keptCounts[chunk] = filterWords(filter, startWord, startWord + CHUNK_WORDS);
+        });
+
+        int newSize = 0;
+        for (int keptCount : keptCounts) {
+            newSize += keptCount;
+        }
+        size = newSize;
+    }
+
+    private int filterWords(Filter filter, int startWord, int endWord) {
+        Random rand = new LcgRandom(0);
+        int kept = 0;
+        for (int wordIndex = startWord; wordIndex < endWord; wordIndex++) {
+            long word = bitmap[wordIndex];
+            for (long remaining = word; remaining != 0; remaining &= remaining - 1) {
+                int bit = Long.numberOfTrailingZeros(remaining);
+                if (!filter.test(rand, toXpSeed(wordIndex * Long.SIZE + bit))) {
+                    word &= ~(1L << bit);
+                }
+            }
+            bitmap[wordIndex] = word;
+            kept += Long.bitCount(word);
+        }
+        return kept;
+    }
+
+    @FunctionalInterface
+    interface Filter {
+        boolean test(Random rand, int xpSeed);
+    }
+}
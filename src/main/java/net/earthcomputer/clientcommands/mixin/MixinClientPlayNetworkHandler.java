@@ -4,6 +4,8 @@ import com.mojang.brigadier.StringReader;
 import net.cortex.clientAddon.cracker.SeedCracker;
 import net.earthcomputer.clientcommands.ClientcommandsDataQueryHandler;
 import net.earthcomputer.clientcommands.Configs;
+import net.earthcomputer.clientcommands.ServerTickClock;
+import net.earthcomputer.clientcommands.command.PingCommand;
 import net.earthcomputer.clientcommands.command.PluginsCommand;
 import net.earthcomputer.clientcommands.features.FishingCracker;
 import net.earthcomputer.clientcommands.features.PlayerRandCracker;
@@ -17,7 +19,10 @@ import net.minecraft.network.ClientConnection;
 import net.minecraft.network.packet.s2c.play.CommandSuggestionsS2CPacket;
 import net.minecraft.network.packet.s2c.play.EntitySpawnS2CPacket;
 import net.minecraft.network.packet.s2c.play.ExperienceOrbSpawnS2CPacket;
+import net.minecraft.network.packet.s2c.play.InventoryS2CPacket;
 import net.minecraft.network.packet.s2c.play.NbtQueryResponseS2CPacket;
+import net.minecraft.network.packet.s2c.play.ScreenHandlerSlotUpdateS2CPacket;
+import net.minecraft.network.packet.s2c.play.WorldTimeUpdateS2CPacket;
 import net.minecraft.util.math.Vec3d;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Unique;
@@ -43,6 +48,10 @@ public abstract class MixinClientPlayNetworkHandler extends ClientCommonNetworkH
 
         SeedCracker.onEntityCreation(packet);
 
+        if (packet.getEntityType() == EntityType.ITEM) {
+            PlayerRandCracker.onItemEntitySpawn(new Vec3d(packet.getX(), packet.getY(), packet.getZ()), new Vec3d(packet.getVelocityX(), packet.getVelocityY(), packet.getVelocityZ()));
+        }
+
         if (FishingCracker.canManipulateFishing()) {
             if (packet.getEntityData() == player.getId() && packet.getEntityType() == EntityType.FISHING_BOBBER) {
                 FishingCracker.processBobberSpawn(packet.getUuid(), new Vec3d(packet.getX(), packet.getY(), packet.getZ()), new Vec3d(packet.getVelocityX(), packet.getVelocityY(), packet.getVelocityZ()));
@@ -82,10 +91,25 @@ public abstract class MixinClientPlayNetworkHandler extends ClientCommonNetworkH
         }
     }
 
+    @Inject(method = "onScreenHandlerSlotUpdate", at = @At("TAIL"))
+    private void onOnScreenHandlerSlotUpdate(ScreenHandlerSlotUpdateS2CPacket packet, CallbackInfo ci) {
+        if (packet.getSyncId() != -1) {
+            PlayerRandCracker.onSlotUpdate(packet.getSyncId(), packet.getSlot());
+        }
+    }
+
+    @Inject(method = "onInventory", at = @At("TAIL"))
+    private void onOnInventory(InventoryS2CPacket packet, CallbackInfo ci) {
+        PlayerRandCracker.onInventoryContents();
+    }
+
     @Inject(method = "onWorldTimeUpdate", at = @At("HEAD"))
-    private void onOnWorldTimeUpdatePre(CallbackInfo ci) {
-        if (Configs.getFishingManipulation().isEnabled() && !MinecraftClient.getInstance().isOnThread()) {
-            FishingCracker.onTimeSync();
+    private void onOnWorldTimeUpdatePre(WorldTimeUpdateS2CPacket packet, CallbackInfo ci) {
+        if (!MinecraftClient.getInstance().isOnThread()) {
+            ServerTickClock.onWorldTimeUpdate(System.nanoTime(), packet.getTime(), PingCommand.getLocalPing());
+            if (Configs.getFishingManipulation().isEnabled()) {
+                FishingCracker.onTimeSync();
+            }
         }
     }
 
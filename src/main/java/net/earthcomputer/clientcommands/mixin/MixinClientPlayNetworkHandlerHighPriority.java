@@ -1,6 +1,7 @@
 package net.earthcomputer.clientcommands.mixin;
 
 import net.earthcomputer.clientcommands.features.ClientCommandFunctions;
+import net.earthcomputer.clientcommands.features.EnchantmentCracker;
 import net.earthcomputer.clientcommands.features.Relogger;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
 import org.spongepowered.asm.mixin.Mixin;
@@ -13,6 +14,7 @@ public class MixinClientPlayNetworkHandlerHighPriority {
     @Inject(method = "onGameJoin", at = @At("RETURN"))
     private void postGameJoin(CallbackInfo ci) {
         if (!Relogger.onRelogSuccess()) {
+            EnchantmentCracker.loadState();
             ClientCommandFunctions.runStartup();
         }
     }
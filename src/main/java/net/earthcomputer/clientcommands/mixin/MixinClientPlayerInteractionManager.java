@@ -7,7 +7,9 @@ import net.minecraft.block.Blocks;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayerEntity;
 import net.minecraft.client.network.ClientPlayerInteractionManager;
+import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.item.*;
+import net.minecraft.screen.slot.SlotActionType;
 import net.minecraft.util.ActionResult;
 import net.minecraft.util.Hand;
 import net.minecraft.util.hit.BlockHitResult;
@@ -58,4 +60,9 @@ public class MixinClientPlayerInteractionManager {
     private void sendSequencedPacketFinally(CallbackInfo ci) {
         PlayerRandCracker.isPredictingBlockBreaking = false;
     }
+
+    @Inject(method = "clickSlot", at = @At("HEAD"))
+    private void onClickSlot(int syncId, int slotId, int button, SlotActionType actionType, PlayerEntity player, CallbackInfo ci) {
+        PlayerRandCracker.onSlotClick(syncId, slotId, button, actionType);
+    }
 }
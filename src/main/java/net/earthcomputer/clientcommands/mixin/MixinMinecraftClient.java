@@ -4,6 +4,9 @@ import dev.xpple.betterconfig.api.BetterConfigAPI;
 import net.earthcomputer.clientcommands.ClientCommands;
 import net.earthcomputer.clientcommands.GuiBlocker;
 import net.earthcomputer.clientcommands.ServerBrandManager;
+import net.earthcomputer.clientcommands.ServerTickClock;
+import net.earthcomputer.clientcommands.features.EnchantmentCracker;
+import net.earthcomputer.clientcommands.features.FishingCracker;
 import net.earthcomputer.clientcommands.features.PlayerRandCracker;
 import net.earthcomputer.clientcommands.features.Relogger;
 import net.earthcomputer.clientcommands.features.RenderSettings;
@@ -65,9 +68,17 @@ public abstract class MixinMinecraftClient {
         }
     }
 
+    @Inject(method = "disconnect(Lnet/minecraft/client/gui/screen/Screen;)V", at = @At("HEAD"))
+    public void preDisconnect(Screen screen, CallbackInfo ci) {
+        // the server entry is gone by the end
+        EnchantmentCracker.saveState();
+        FishingCracker.saveTimingModel();
+    }
+
     @Inject(method = "disconnect(Lnet/minecraft/client/gui/screen/Screen;)V", at = @At("RETURN"))
     public void onDisconnect(Screen screen, CallbackInfo ci) {
         ServerBrandManager.onDisconnect();
+        ServerTickClock.reset();
         if (!Relogger.isRelogging) {
             BetterConfigAPI.getInstance().getModConfig("clientcommands").resetTemporaryConfigs();
         }
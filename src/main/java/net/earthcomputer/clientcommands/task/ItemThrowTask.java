@@ -0,0 +1,60 @@
+package net.earthcomputer.clientcommands.task;
+
+import net.earthcomputer.clientcommands.Configs;
+import net.earthcomputer.clientcommands.features.PlayerRandCracker;
+
+/**
+ * Throws a number of items for RNG manipulation, several per tick. Throws are counted as in flight until the server
+ * spawns their item entity, and no more are sent while too many are in flight, so that a lagging server isn't flooded
+ * with packets. Completes once every throw has been sent and confirmed.
+ */
+public class ItemThrowTask extends SimpleTask {
+    // if the server confirms nothing for this long, the missing confirmations are assumed to be lost
+    private static final int CONFIRMATION_TIMEOUT_TICKS = 40;
+
+    private int remainingThrows;
+    private int lastUnconfirmedThrows;
+    private int ticksWithoutConfirmation;
+
+    public ItemThrowTask(int throwCount) {
+        this.remainingThrows = throwCount;
+    }
+
+    /**
+     * Checked every tick, the task stops early if this returns {@code false}
+     */
+    protected boolean canContinue() {
+        return true;
+    }
+
+    public int getRemainingThrows() {
+        return remainingThrows;
+    }
+
+    @Override
+    public boolean condition() {
+        return canContinue() && (remainingThrows > 0 || PlayerRandCracker.getUnconfirmedThrows() > 0);
+    }
+
+    @Override
+    protected void onTick() {
+        int unconfirmedThrows = PlayerRandCracker.getUnconfirmedThrows();
+        if (unconfirmedThrows == 0 || unconfirmedThrows < lastUnconfirmedThrows) {
+            ticksWithoutConfirmation = 0;
+        } else if (++ticksWithoutConfirmation > CONFIRMATION_TIMEOUT_TICKS) {
+            PlayerRandCracker.clearUnconfirmedThrows();
+            ticksWithoutConfirmation = 0;
+        }
+
+        int throwsThisTick = Math.min(remainingThrows, Configs.getMaxItemThrowsPerTick());
+        while (throwsThisTick > 0 && PlayerRandCracker.getUnconfirmedThrows() < Configs.getMaxItemThrowsInFlight()) {
+            if (!PlayerRandCracker.throwItem()) {
+                // wait for more items to arrive in the inventory
+                break;
+            }
+            remainingThrows--;
+            throwsThisTick--;
+        }
+        lastUnconfirmedThrows = PlayerRandCracker.getUnconfirmedThrows();
+    }
+}